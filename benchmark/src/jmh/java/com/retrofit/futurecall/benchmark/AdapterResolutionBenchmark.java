@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.FutureCall;
+import com.retrofit.futurecall.FutureCallAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * Cost of resolving a CallAdapter for a return type, on the first service method of a type
+ * and on later ones, and of adapting a call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class AdapterResolutionBenchmark {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private Retrofit mRetrofit;
+
+    private FutureCallAdapterFactory<Pack> mFactory;
+
+    private CallAdapter<Object, FutureCall<Pack<Item>>> mAdapter;
+
+    private StubCall<Object> mCall;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setUp() {
+        mRetrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+        mFactory = FutureCallAdapterFactory.create(Pack.class);
+        mAdapter = (CallAdapter<Object, FutureCall<Pack<Item>>>) mFactory
+                .get(Api.Types.PACK, NO_ANNOTATIONS, mRetrofit);
+        mCall = new StubCall<>(Response.success((Object) new Pack<Item>()), false);
+    }
+
+    @Benchmark
+    public CallAdapter<?, ?> firstResolve() {
+        return FutureCallAdapterFactory.create(Pack.class)
+                .get(Api.Types.ITEM, NO_ANNOTATIONS, mRetrofit);
+    }
+
+    @Benchmark
+    public CallAdapter<?, ?> cachedResolve() {
+        return mFactory.get(Api.Types.ITEM, NO_ANNOTATIONS, mRetrofit);
+    }
+
+    @Benchmark
+    public FutureCall<Pack<Item>> adapt() {
+        return mAdapter.adapt(mCall);
+    }
+}
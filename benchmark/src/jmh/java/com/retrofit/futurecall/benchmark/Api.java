@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.FutureCall;
+
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+import retrofit2.http.GET;
+
+public interface Api {
+
+    @GET("item")
+    FutureCall<Item> item();
+
+    @GET("item")
+    FutureCall<Pack<Item>> pack();
+
+    @GET("item")
+    FutureCall<ResponseBody> raw();
+
+    final class Types {
+
+        static final Type ITEM = returnType("item");
+
+        static final Type PACK = returnType("pack");
+
+        private Types() {
+        }
+
+        private static Type returnType(String method) {
+            try {
+                return Api.class.getMethod(method).getGenericReturnType();
+            } catch (NoSuchMethodException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.CallbackDispatch;
+import com.retrofit.futurecall.FutureCall;
+import com.retrofit.futurecall.FutureCallAdapterFactory;
+import com.retrofit.futurecall.OnCallback;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * Bursts of completions delivered to a single "main" thread, reports messages posted to it
+ * per callback for each dispatch mode.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+
+    private static final int BURST = 64;
+
+    @Param({"executor", "batched", "immediate"})
+    public String mode;
+
+    private ExecutorService mMainThread;
+
+    private CallbackDispatch mDispatch;
+
+    private CallAdapter<Object, FutureCall<Pack<Item>>> mAdapter;
+
+    private Response<Object> mResponse;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Messages {
+
+        public long messages;
+
+        public long callbacks;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            messages = 0;
+            callbacks = 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        mMainThread = Executors.newSingleThreadExecutor();
+        if ("executor".equals(mode)) {
+            mDispatch = CallbackDispatch.on(mMainThread);
+        } else if ("batched".equals(mode)) {
+            mDispatch = CallbackDispatch.batched(mMainThread);
+        } else {
+            mDispatch = CallbackDispatch.immediate();
+        }
+        final Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+        mAdapter = (CallAdapter<Object, FutureCall<Pack<Item>>>) FutureCallAdapterFactory
+                .create(Pack.class)
+                .setCallbackDispatch(mDispatch)
+                .get(Api.Types.PACK, new Annotation[0], retrofit);
+        final Pack<Item> pack = new Pack<>();
+        pack.result = new Item();
+        mResponse = Response.success((Object) pack);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mMainThread.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burst(Messages counters) throws InterruptedException {
+        final long before = mDispatch.messageCount();
+        final CountDownLatch latch = new CountDownLatch(BURST);
+        final OnCallback<Pack<Item>> callback = new OnCallback<Pack<Item>>() {
+            @Override
+            public void onResponse(int code, String message, Pack<Item> result) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError() {
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < BURST; i++) {
+            mAdapter.adapt(new StubCall<>(mResponse, true)).enqueue(callback);
+        }
+        latch.await();
+        counters.messages += mDispatch.messageCount() - before;
+        counters.callbacks += BURST;
+    }
+}
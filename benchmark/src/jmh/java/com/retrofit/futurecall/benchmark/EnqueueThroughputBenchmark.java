@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.FutureCall;
+import com.retrofit.futurecall.FutureCallAdapterFactory;
+import com.retrofit.futurecall.OnCallback;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * Throughput of enqueue, over the in process server and over in memory calls which
+ * leaves only the cost of the library.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class EnqueueThroughputBenchmark {
+
+    private static final int BATCH = 32;
+
+    private CallAdapter<Object, FutureCall<Pack<Item>>> mAdapter;
+
+    private Response<Object> mResponse;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setUp() {
+        final Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+        mAdapter = (CallAdapter<Object, FutureCall<Pack<Item>>>) FutureCallAdapterFactory
+                .create(Pack.class)
+                .get(Api.Types.PACK, new Annotation[0], retrofit);
+        final Pack<Item> pack = new Pack<>();
+        pack.result = new Item();
+        mResponse = Response.success((Object) pack);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void network(ServerState state) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(BATCH);
+        final OnCallback<Item> callback = new LatchCallback<>(latch);
+        for (int i = 0; i < BATCH; i++) {
+            state.api.item().enqueue(callback);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void inMemory() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(BATCH);
+        final OnCallback<Pack<Item>> callback = new LatchCallback<>(latch);
+        for (int i = 0; i < BATCH; i++) {
+            mAdapter.adapt(new StubCall<>(mResponse, true)).enqueue(callback);
+        }
+        latch.await();
+    }
+
+    private static final class LatchCallback<T> implements OnCallback<T> {
+
+        private final CountDownLatch mLatch;
+
+        LatchCallback(CountDownLatch latch) {
+            mLatch = latch;
+        }
+
+        @Override
+        public void onResponse(int code, String message, T result) {
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onError() {
+            mLatch.countDown();
+        }
+    }
+}
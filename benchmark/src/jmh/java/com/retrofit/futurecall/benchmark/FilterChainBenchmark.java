@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.FutureCall;
+import com.retrofit.futurecall.FutureCallAdapterFactory;
+import com.retrofit.futurecall.PackableFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * Cost of the packable filter chain per response, compare the filter counts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FilterChainBenchmark {
+
+    @Param({"0", "1", "8", "32"})
+    public int filters;
+
+    private CallAdapter<Object, FutureCall<Pack<Item>>> mAdapter;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setUp() {
+        final FutureCallAdapterFactory<Pack> factory = FutureCallAdapterFactory.create(Pack.class);
+        for (int i = 0; i < filters; i++) {
+            factory.addFilter(new PackableFilter<Pack>() {
+                @Override
+                public boolean onFilter(Pack pack) {
+                    return pack.resultCode != 0;
+                }
+            });
+        }
+        final Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+        mAdapter = (CallAdapter<Object, FutureCall<Pack<Item>>>) factory
+                .get(Api.Types.PACK, new Annotation[0], retrofit);
+    }
+
+    @Benchmark
+    public Pack<Item> get() throws IOException, InterruptedException {
+        // a new response per call, filters run once per response.
+        final Pack<Item> pack = new Pack<>();
+        pack.result = new Item();
+        return mAdapter.adapt(new StubCall<>(Response.success((Object) pack), true)).get();
+    }
+}
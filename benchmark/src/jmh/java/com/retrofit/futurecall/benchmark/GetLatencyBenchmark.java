@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Round trip of get() against the in process server, per adapter kind.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GetLatencyBenchmark {
+
+    @Benchmark
+    public Item data(ServerState state) throws IOException, InterruptedException {
+        return state.api.item().get();
+    }
+
+    @Benchmark
+    public Pack<Item> pack(ServerState state) throws IOException, InterruptedException {
+        return state.api.pack().get();
+    }
+
+    @Benchmark
+    public String raw(ServerState state) throws IOException, InterruptedException {
+        final ResponseBody body = state.api.raw().get();
+        return body != null ? body.string() : null;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+/**
+ * Completion as FutureResponseCall did it before CAS completion, waiters wait on a monitor
+ * and are woken by notifyAll, kept as the baseline of {@link WaitersBenchmark} and
+ * {@link TimedWaitBenchmark}.
+ */
+final class MonitorFuture<T> {
+
+    private final Object mLock = new Object();
+
+    private T mResult;
+
+    private boolean isDone;
+
+    T get() throws InterruptedException {
+        synchronized (mLock) {
+            while (!isDone) {
+                mLock.wait();
+            }
+            return mResult;
+        }
+    }
+
+    /**
+     * One timed wait of millisecond granularity, as the former get(timeout, unit).
+     */
+    T get(long timeoutMillis) throws InterruptedException {
+        synchronized (mLock) {
+            if (!isDone) {
+                mLock.wait(timeoutMillis);
+            }
+            return mResult;
+        }
+    }
+
+    void complete(T result) {
+        synchronized (mLock) {
+            mResult = result;
+            isDone = true;
+            mLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.Packable;
+
+public class Pack<T> implements Packable<T> {
+
+    public int resultCode;
+
+    public String resultMessage;
+
+    public T result;
+
+    @Override
+    public T data() {
+        return result;
+    }
+
+    @Override
+    public int code() {
+        return resultCode;
+    }
+
+    @Override
+    public String message() {
+        return resultMessage;
+    }
+}
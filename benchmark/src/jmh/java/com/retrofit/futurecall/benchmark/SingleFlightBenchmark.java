@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.FutureCallAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Round trip of a burst of identical get() against the in process server, each call
+ * on its own or coalesced by single flight. The server takes 1ms per response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SingleFlightBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int callers;
+
+    @Param({"false", "true"})
+    public boolean singleFlight;
+
+    private MockWebServer mServer;
+
+    private ExecutorService mPool;
+
+    private Api mApi;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mPool = Executors.newFixedThreadPool(callers);
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setBody(ServerState.BODY)
+                        .setHeadersDelay(1, TimeUnit.MILLISECONDS);
+            }
+        });
+        mServer.start();
+        final FutureCallAdapterFactory<Pack> factory = FutureCallAdapterFactory.create(Pack.class);
+        if (singleFlight) {
+            factory.enableSingleFlight();
+        }
+        final OkHttpClient client = new OkHttpClient();
+        // let every caller reach the server when not coalesced.
+        client.dispatcher().setMaxRequestsPerHost(callers);
+        mApi = new Retrofit.Builder()
+                .baseUrl(mServer.url("/"))
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .addCallAdapterFactory(factory)
+                .callbackExecutor(Runnable::run)
+                .build()
+                .create(Api.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mPool.shutdownNow();
+        mServer.shutdown();
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(callers);
+        for (int i = 0; i < callers; i++) {
+            mPool.execute(() -> {
+                try {
+                    mApi.item().get();
+                } catch (Exception ignored) {
+                    // measured either way.
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
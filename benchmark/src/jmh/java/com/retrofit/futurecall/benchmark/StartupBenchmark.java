@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.FutureCallAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Startup of a service interface of hundreds of methods, generated and compiled at setup:
+ * a new retrofit and adapter factory validate every method eagerly, as an app does at
+ * start. Methods share a few return types, so most of them hit the resolved adapter plan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final String PACKAGE = "com.retrofit.futurecall.benchmark.generated";
+
+    private static final String[] RETURN_TYPES = {
+            "FutureCall<Item>",
+            "FutureCall<Pack<Item>>",
+            "FutureCall<List<Item>>",
+            "FutureCall<Response<Item>>",
+    };
+
+    @Param({"100", "500"})
+    public int methods;
+
+    private Class<?> mService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ClassNotFoundException {
+        mService = generate(methods);
+    }
+
+    @Benchmark
+    public Object create() {
+        return new Retrofit.Builder()
+                .baseUrl("http://localhost/")
+                .addConverterFactory(GsonConverterFactory.create())
+                .addCallAdapterFactory(FutureCallAdapterFactory.create(Pack.class))
+                .callbackExecutor(Runnable::run)
+                .validateEagerly(true)
+                .build()
+                .create(mService);
+    }
+
+    private static Class<?> generate(int methods) throws IOException, ClassNotFoundException {
+        final StringBuilder sb = new StringBuilder()
+                .append("package ").append(PACKAGE).append(";\n")
+                .append("import com.retrofit.futurecall.FutureCall;\n")
+                .append("import com.retrofit.futurecall.benchmark.Item;\n")
+                .append("import com.retrofit.futurecall.benchmark.Pack;\n")
+                .append("import java.util.List;\n")
+                .append("import retrofit2.Response;\n")
+                .append("import retrofit2.http.GET;\n")
+                .append("import retrofit2.http.Path;\n")
+                .append("public interface LargeApi {\n");
+        for (int i = 0; i < methods; i++) {
+            sb.append("    @GET(\"items").append(i).append("/{id}\")\n    ")
+                    .append(RETURN_TYPES[i % RETURN_TYPES.length])
+                    .append(" method").append(i).append("(@Path(\"id\") int id);\n");
+        }
+        sb.append("}\n");
+        final File dir = Files.createTempDirectory("startup-benchmark").toFile();
+        final File source = new File(dir, "LargeApi.java");
+        Files.write(source.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("needs a JDK to generate the service interface");
+        }
+        final int status = compiler.run(null, null, null, "-nowarn", "-d", dir.getPath(),
+                "-cp", System.getProperty("java.class.path"), source.getPath());
+        if (status != 0) {
+            throw new IllegalStateException("can not compile " + source);
+        }
+        final ClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()},
+                StartupBenchmark.class.getClassLoader());
+        return loader.loadClass(PACKAGE + ".LargeApi");
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import java.io.IOException;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * In memory retrofit call, completes at once or when {@link #complete()} is called,
+ * so the library is measured without network.
+ */
+final class StubCall<T> implements Call<T> {
+
+    private final Response<T> mResponse;
+
+    private final boolean isImmediate;
+
+    private volatile Callback<T> mCallback;
+
+    private volatile boolean isExecuted;
+
+    private volatile boolean isCanceled;
+
+    StubCall(Response<T> response, boolean immediate) {
+        mResponse = response;
+        isImmediate = immediate;
+    }
+
+    void complete() {
+        final Callback<T> callback = mCallback;
+        if (callback != null) {
+            callback.onResponse(this, mResponse);
+        }
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        isExecuted = true;
+        return mResponse;
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        isExecuted = true;
+        if (isImmediate) {
+            callback.onResponse(this, mResponse);
+        } else {
+            mCallback = callback;
+        }
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return isExecuted;
+    }
+
+    @Override
+    public void cancel() {
+        isCanceled = true;
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return isCanceled;
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<T> clone() {
+        return new StubCall<>(mResponse, isImmediate);
+    }
+
+    @Override
+    public Request request() {
+        return new Request.Builder().url("http://localhost/item").build();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.FutureCall;
+import com.retrofit.futurecall.FutureCallAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * Timed get() of a call that never completes, the score against the timeout is the overshoot
+ * of the nanoTime deadline, against the millisecond monitor wait.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TimedWaitBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public long timeoutMicros;
+
+    private CallAdapter<Object, FutureCall<Pack<Item>>> mAdapter;
+
+    private Response<Object> mResponse;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+        mAdapter = (CallAdapter<Object, FutureCall<Pack<Item>>>) FutureCallAdapterFactory
+                .create(Pack.class)
+                .get(Api.Types.PACK, new Annotation[0], retrofit);
+        mResponse = Response.success((Object) new Pack<Item>());
+    }
+
+    @Benchmark
+    public Pack<Item> futureCall() throws IOException, InterruptedException {
+        return mAdapter.adapt(new StubCall<>(mResponse, false))
+                .get(timeoutMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @Benchmark
+    public Object monitor() throws InterruptedException {
+        // a monitor can not wait less than a millisecond.
+        return new MonitorFuture<>().get(Math.max(1, timeoutMicros / 1000));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.benchmark;
+
+import com.retrofit.futurecall.FutureCall;
+import com.retrofit.futurecall.FutureCallAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * Many threads blocked in get() of one call, time from completion until all of them returned,
+ * against the monitor based completion.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class WaitersBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int waiters;
+
+    private ExecutorService mPool;
+
+    private CallAdapter<Object, FutureCall<Pack<Item>>> mAdapter;
+
+    private Response<Object> mResponse;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        mPool = Executors.newFixedThreadPool(waiters);
+        final Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+        mAdapter = (CallAdapter<Object, FutureCall<Pack<Item>>>) FutureCallAdapterFactory
+                .create(Pack.class)
+                .get(Api.Types.PACK, new Annotation[0], retrofit);
+        final Pack<Item> pack = new Pack<>();
+        pack.result = new Item();
+        mResponse = Response.success((Object) pack);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mPool.shutdownNow();
+    }
+
+    @Benchmark
+    public void futureCall() throws InterruptedException {
+        final StubCall<Object> call = new StubCall<>(mResponse, false);
+        final FutureCall<Pack<Item>> future = mAdapter.adapt(call).submit();
+        final CountDownLatch started = new CountDownLatch(waiters);
+        final CountDownLatch done = new CountDownLatch(waiters);
+        for (int i = 0; i < waiters; i++) {
+            mPool.execute(() -> {
+                started.countDown();
+                try {
+                    future.get();
+                } catch (Exception ignored) {
+                    // measured either way.
+                }
+                done.countDown();
+            });
+        }
+        started.await();
+        call.complete();
+        done.await();
+    }
+
+    @Benchmark
+    public void monitor() throws InterruptedException {
+        final MonitorFuture<Object> future = new MonitorFuture<>();
+        final CountDownLatch started = new CountDownLatch(waiters);
+        final CountDownLatch done = new CountDownLatch(waiters);
+        for (int i = 0; i < waiters; i++) {
+            mPool.execute(() -> {
+                started.countDown();
+                try {
+                    future.get();
+                } catch (InterruptedException ignored) {
+                    // measured either way.
+                }
+                done.countDown();
+            });
+        }
+        started.await();
+        future.complete(mResponse.body());
+        done.await();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package android.os;
+
+/**
+ * JVM stub of android Build for benchmarks.
+ */
+
+
+public final class Build {
+
+    private Build() {
+    }
+
+    public static final class VERSION {
+
+        /**
+         * Zero so retrofit takes the JVM platform instead of android.
+         */
+        public static final int SDK_INT = 0;
+
+        private VERSION() {
+        }
+    }
+
+    public static final class VERSION_CODES {
+
+        public static final int JELLY_BEAN_MR1 = 17;
+
+        public static final int N = 24;
+
+        private VERSION_CODES() {
+        }
+    }
+}
@@ -14,12 +14,12 @@
 
 package com.retrofit.futurecall;
 
+import android.support.annotation.NonNull;
+
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-import retrofit2.Call;
-
 /**
  * Created by wangjie2013
  * on 18-1-25.
@@ -37,14 +37,28 @@ abstract class AbsFutureCall<T> implements FutureCall<T> {
         }
     }
 
-    static void checkIsExecuted(Call<?> call) {
-        if (call == null) {
-            throw new IllegalStateException("Call is null");
-        }
-        if (call.isExecuted()) {
-            throw new IllegalStateException("Already executed.");
-        }
-    }
+    /**
+     * See {@link FutureCallHelper#whenComplete(FutureCall, OnCallback)}.
+     */
+    @NonNull
+    public abstract FutureCall<T> whenComplete(OnCallback<T> callback);
+
+    /**
+     * See {@link FutureCallHelper#dispatchOn(FutureCall, CallbackDispatch)}.
+     */
+    @NonNull
+    public abstract FutureCall<T> dispatchOn(@NonNull CallbackDispatch dispatch);
+
+    /**
+     * See {@link FutureCallHelper#priority(FutureCall, int)}.
+     */
+    @NonNull
+    public abstract FutureCall<T> priority(int priority);
+
+    /**
+     * @return the call that executes the request of this one.
+     */
+    abstract FutureResponseCall<?> responseCall();
 
     @Override
     public T get() throws IOException, InterruptedException {
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Batchable service method, calls of it that arrive within a short window are combined into
+ * one request by the {@link BatchAdapter} added to {@link FutureCallAdapterFactory} by name.
+ */
+
+
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batch {
+
+    /**
+     * @return name of the batch adapter.
+     */
+    String value();
+
+    /**
+     * @return max calls of a batch, a full window is sent at once.
+     */
+    int maxSize() default 20;
+
+    /**
+     * @return max delay of the first call of a window.
+     */
+    long maxDelayMillis() default 10;
+}
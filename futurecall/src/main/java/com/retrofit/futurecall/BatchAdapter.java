@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Combines the requests of {@link Batch} calls into one call of a batch endpoint, and splits
+ * its response back to the calls, such as by a service method returning a plain retrofit Call.
+ */
+
+
+public interface BatchAdapter<B> {
+
+    /**
+     * @param requests requests of the calls in a window, at least two.
+     * @return call of the batch endpoint, not executed.
+     */
+    @NonNull
+    Call<B> newBatchCall(@NonNull List<Request> requests);
+
+    /**
+     * Split a successful batch response, each response must be of the type the service method
+     * of the request expects, such as {@code Response<Pack<Foo>>} for
+     * {@code FutureCall<Foo>} with a Pack factory.
+     *
+     * @return responses in order of requests, a null item fails that call, an error response
+     * is reported to that call as is.
+     */
+    @NonNull
+    List<? extends Response<?>> split(@NonNull List<Request> requests,
+            @NonNull Response<B> response) throws IOException;
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.io.IOException;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+
+/**
+ * Joins a window of the {@link Batcher} instead of enqueuing the delegate, the delegate only
+ * carries the request unless it is sent alone. It sits outside the admission decorators, which
+ * admit the batch request instead.
+ */
+
+
+final class BatchCall<R> extends ForwardingCall<R> {
+
+    private final Batcher mBatcher;
+
+    private final CallContext mContext;
+
+    private volatile Batcher.Item<R> mItem;
+
+    BatchCall(Call<R> delegate, Batcher batcher, CallContext context) {
+        super(delegate);
+        this.mBatcher = batcher;
+        this.mContext = context;
+    }
+
+    @Override
+    public void enqueue(Callback<R> callback) {
+        final Batcher.Item<R> item = new Batcher.Item<>(delegate(), this, callback, mContext);
+        mItem = item;
+        mBatcher.add(item);
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return mItem != null || super.isExecuted();
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        final Batcher.Item<R> item = mItem;
+        if (item != null && mBatcher.remove(item)) {
+            item.onFailure(this, new IOException("Canceled"));
+        }
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<R> clone() {
+        return new BatchCall<>(delegate().clone(), mBatcher, mContext);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Collects calls of a {@link Batch} service method into windows, a window is sent when full
+ * or when its first call waited the max delay on the shared timer. A window of one call
+ * sends that call as is.
+ */
+
+
+final class Batcher {
+
+    private final BatchAdapter<Object> mAdapter;
+
+    private final int mMaxSize;
+
+    private final long mMaxDelayMillis;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    /**
+     * Calls of the open window, guarded by the lock.
+     */
+    private List<Item<?>> mWindow;
+
+    @SuppressWarnings("unchecked")
+    Batcher(BatchAdapter<?> adapter, Batch batch) {
+        if (batch.maxSize() < 1) {
+            throw new IllegalStateException("Batch maxSize < 1");
+        }
+        if (batch.maxDelayMillis() < 0) {
+            throw new IllegalStateException("Batch maxDelayMillis < 0");
+        }
+        this.mAdapter = (BatchAdapter<Object>) adapter;
+        this.mMaxSize = batch.maxSize();
+        this.mMaxDelayMillis = batch.maxDelayMillis();
+    }
+
+    void add(Item<?> item) {
+        final List<Item<?>> window;
+        List<Item<?>> full = null;
+        mLock.lock();
+        try {
+            if (mWindow == null) {
+                window = mWindow = new ArrayList<>(Math.min(mMaxSize, 16));
+            } else {
+                window = null;
+            }
+            mWindow.add(item);
+            if (mWindow.size() >= mMaxSize) {
+                full = mWindow;
+                mWindow = null;
+            }
+        } finally {
+            mLock.unlock();
+        }
+        if (full != null) {
+            send(full);
+        } else if (window != null) {
+            FutureCallScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    mLock.lock();
+                    try {
+                        if (mWindow != window) {
+                            // sent when full.
+                            return;
+                        }
+                        mWindow = null;
+                    } finally {
+                        mLock.unlock();
+                    }
+                    send(window);
+                }
+            }, mMaxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return true if the item was waiting in the open window and is removed.
+     */
+    boolean remove(Item<?> item) {
+        mLock.lock();
+        try {
+            return mWindow != null && mWindow.remove(item);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void send(final List<Item<?>> items) {
+        final int size = items.size();
+        if (size == 1) {
+            items.get(0).enqueue();
+            return;
+        }
+        final List<Request> requests = new ArrayList<>(size);
+        for (Item<?> item : items) {
+            requests.add(item.call.request());
+        }
+        final Call<Object> batch;
+        try {
+            batch = items.get(0).context.admit(mAdapter.newBatchCall(requests));
+        } catch (RuntimeException e) {
+            failAll(items, e);
+            return;
+        }
+        batch.enqueue(new Callback<Object>() {
+            @Override
+            public void onResponse(Call<Object> call, Response<Object> response) {
+                if (!response.isSuccessful()) {
+                    failAll(items, new IOException("batch response " + response.code()));
+                    return;
+                }
+                final List<? extends Response<?>> responses;
+                try {
+                    responses = mAdapter.split(requests, response);
+                    if (responses.size() != size) {
+                        throw new IOException("batch split " + responses.size()
+                                + " responses of " + size + " requests");
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failAll(items, e);
+                    return;
+                }
+                for (int i = 0; i < size; i++) {
+                    final Response<?> r = responses.get(i);
+                    if (r == null) {
+                        items.get(i).onFailure(null, new IOException("batch item failed"));
+                    } else {
+                        items.get(i).onSplit(r);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Object> call, Throwable t) {
+                failAll(items, t);
+            }
+        });
+    }
+
+    private static void failAll(List<Item<?>> items, Throwable t) {
+        for (Item<?> item : items) {
+            item.onFailure(null, t);
+        }
+    }
+
+    /**
+     * A call waiting in a window, reports to the callback of the batch call that owns it.
+     */
+    static final class Item<R> implements Callback<R> {
+
+        final Call<R> call;
+
+        /**
+         * Context of the service method, the batch request is admitted by it.
+         */
+        final CallContext context;
+
+        private final Call<R> mOwner;
+
+        private final Callback<R> mCallback;
+
+        Item(Call<R> call, Call<R> owner, Callback<R> callback, CallContext context) {
+            this.call = call;
+            this.mOwner = owner;
+            this.mCallback = callback;
+            this.context = context;
+        }
+
+        /**
+         * Send the call alone, as a window of one.
+         */
+        void enqueue() {
+            call.enqueue(this);
+        }
+
+        /**
+         * @param response split from the batch response by the adapter, of the type the
+         *                 request of this call expects.
+         */
+        @SuppressWarnings("unchecked")
+        void onSplit(Response<?> response) {
+            onResponse(null, (Response<R>) response);
+        }
+
+        @Override
+        public void onResponse(Call<R> c, Response<R> response) {
+            if (call.isCanceled()) {
+                mCallback.onFailure(mOwner, new IOException("Canceled"));
+                return;
+            }
+            mCallback.onResponse(mOwner, response);
+        }
+
+        @Override
+        public void onFailure(Call<R> c, Throwable t) {
+            mCallback.onFailure(mOwner, t);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulkhead of network calls, limits concurrency per host and per service method so one noisy
+ * endpoint can not starve others. Calls over the limit wait in a bounded queue, calls over the
+ * queue fail fast with a {@link CallRejectedException} of {@link #CODE_REJECTED}.
+ */
+
+
+public final class Bulkhead {
+
+    /**
+     * {@link CallRejectedException#code()} of calls rejected because the wait queue is full.
+     */
+    public static final int CODE_REJECTED = 496;
+
+    private final int mMaxPerHost;
+
+    private int mMaxPerMethod;
+
+    private int mMaxQueue = 64;
+
+    private int mMinLimit;
+
+    private final ConcurrentMap<String, Limiter> mHosts = new ConcurrentHashMap<>();
+
+    private final AtomicLong mRejectedCount = new AtomicLong();
+
+    private Bulkhead(int maxPerHost) {
+        this.mMaxPerHost = maxPerHost;
+    }
+
+    /**
+     * @param maxPerHost max concurrent calls to one host.
+     */
+    @NonNull
+    public static Bulkhead create(int maxPerHost) {
+        if (maxPerHost <= 0) {
+            throw new IllegalArgumentException("maxPerHost must be positive");
+        }
+        return new Bulkhead(maxPerHost);
+    }
+
+    /**
+     * @param max max concurrent calls of one service method, no limit if not positive.
+     */
+    @NonNull
+    public Bulkhead maxPerMethod(int max) {
+        mMaxPerMethod = max;
+        return this;
+    }
+
+    /**
+     * @param max max calls waiting for a permit of one limiter, default 64.
+     */
+    @NonNull
+    public Bulkhead maxQueue(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max must not be negative");
+        }
+        mMaxQueue = max;
+        return this;
+    }
+
+    /**
+     * Adapt the per host limit between minLimit and maxPerHost by AIMD, the limit grows by one
+     * while latency stays near the lowest observed one, and shrinks by 10% on failures or when
+     * latency doubles.
+     */
+    @NonNull
+    public Bulkhead adaptive(int minLimit) {
+        if (minLimit <= 0 || minLimit > mMaxPerHost) {
+            throw new IllegalArgumentException("minLimit must be in [1, maxPerHost]");
+        }
+        mMinLimit = minLimit;
+        return this;
+    }
+
+    public long rejectedCount() {
+        return mRejectedCount.get();
+    }
+
+    /**
+     * @return current limit of the host, maxPerHost if no call to it yet.
+     */
+    public int limitOf(@NonNull String host) {
+        final Limiter limiter = mHosts.get(host);
+        return limiter != null ? limiter.limit.get() : mMaxPerHost;
+    }
+
+    Limiter hostLimiter(String host) {
+        Limiter limiter = mHosts.get(host);
+        if (limiter == null) {
+            final Limiter created = new Limiter(mMaxPerHost, mMaxQueue, mMinLimit);
+            limiter = mHosts.putIfAbsent(host, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * @return limiter shared by calls of one service method, null if no per method limit.
+     */
+    Limiter newMethodLimiter() {
+        return mMaxPerMethod > 0 ? new Limiter(mMaxPerMethod, mMaxQueue, 0) : null;
+    }
+
+    void onRejected() {
+        mRejectedCount.incrementAndGet();
+    }
+
+    static final class Limiter {
+
+        static final int GRANTED = 0;
+
+        static final int QUEUED = 1;
+
+        static final int REJECTED = 2;
+
+        /**
+         * Samples before the lowest observed latency is forgotten, so it follows network changes.
+         */
+        private static final int RTT_WINDOW = 512;
+
+        final AtomicInteger limit;
+
+        private final int mMaxLimit;
+
+        private final int mMinLimit;
+
+        private final int mMaxQueue;
+
+        private final AtomicInteger mInFlight = new AtomicInteger();
+
+        private final AtomicInteger mQueued = new AtomicInteger();
+
+        private final Queue<Runnable> mWaiters = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger mSamples = new AtomicInteger();
+
+        private volatile long mMinRttNanos = Long.MAX_VALUE;
+
+        /**
+         * @param minLimit not adaptive if not positive.
+         */
+        Limiter(int maxLimit, int maxQueue, int minLimit) {
+            this.limit = new AtomicInteger(maxLimit);
+            this.mMaxLimit = maxLimit;
+            this.mMaxQueue = maxQueue;
+            this.mMinLimit = minLimit;
+        }
+
+        /**
+         * @param waiter run with the permit once granted, if queued.
+         * @return {@link #GRANTED}, {@link #QUEUED} or {@link #REJECTED}.
+         */
+        int acquire(Runnable waiter) {
+            if (tryAcquire()) {
+                return GRANTED;
+            }
+            for (; ; ) {
+                final int queued = mQueued.get();
+                if (queued >= mMaxQueue) {
+                    return REJECTED;
+                }
+                if (mQueued.compareAndSet(queued, queued + 1)) {
+                    break;
+                }
+            }
+            mWaiters.offer(waiter);
+            // a permit may have been released before the waiter was visible.
+            drain();
+            return QUEUED;
+        }
+
+        void release() {
+            mInFlight.decrementAndGet();
+            drain();
+        }
+
+        private boolean tryAcquire() {
+            for (; ; ) {
+                final int inFlight = mInFlight.get();
+                if (inFlight >= limit.get()) {
+                    return false;
+                }
+                if (mInFlight.compareAndSet(inFlight, inFlight + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void drain() {
+            while (!mWaiters.isEmpty() && tryAcquire()) {
+                final Runnable waiter = mWaiters.poll();
+                if (waiter == null) {
+                    mInFlight.decrementAndGet();
+                    continue;
+                }
+                mQueued.decrementAndGet();
+                waiter.run();
+            }
+        }
+
+        /**
+         * Feed the adaptive limit with a finished call.
+         */
+        void onSample(long latencyNanos, boolean success) {
+            if (mMinLimit <= 0) {
+                return;
+            }
+            if (mSamples.incrementAndGet() % RTT_WINDOW == 0) {
+                mMinRttNanos = latencyNanos;
+            } else if (latencyNanos < mMinRttNanos) {
+                mMinRttNanos = latencyNanos;
+            }
+            final int current = limit.get();
+            final int next;
+            if (!success || latencyNanos > 2 * mMinRttNanos) {
+                next = Math.max(mMinLimit, current - Math.max(1, current / 10));
+            } else if (mInFlight.get() * 2 >= current) {
+                // grow only while the limit is actually used.
+                next = Math.min(mMaxLimit, current + 1);
+            } else {
+                return;
+            }
+            if (next != current && limit.compareAndSet(current, next) && next > current) {
+                drain();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Takes a per method permit then a per host permit of the bulkhead before the delegate
+ * is enqueued, permits are released when the delegate completed.
+ */
+
+
+final class BulkheadCall<R> extends ForwardingCall<R> {
+
+    private final Bulkhead mBulkhead;
+
+    private final Bulkhead.Limiter mMethodLimiter;
+
+    BulkheadCall(Call<R> delegate, Bulkhead bulkhead, Bulkhead.Limiter methodLimiter) {
+        super(delegate);
+        this.mBulkhead = bulkhead;
+        this.mMethodLimiter = methodLimiter;
+    }
+
+    @Override
+    public void enqueue(Callback<R> callback) {
+        final Bulkhead.Limiter[] limiters = mMethodLimiter != null
+                ? new Bulkhead.Limiter[]{mMethodLimiter, null}
+                : new Bulkhead.Limiter[]{null};
+        limiters[limiters.length - 1] = mBulkhead.hostLimiter(request().url().host());
+        new Admission(limiters, callback).admit();
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<R> clone() {
+        return new BulkheadCall<>(delegate().clone(), mBulkhead, mMethodLimiter);
+    }
+
+    /**
+     * Acquires limiters one by one, continues on the releasing thread when a queued permit
+     * is granted.
+     */
+    private final class Admission implements Callback<R> {
+
+        private final Bulkhead.Limiter[] mLimiters;
+
+        private final Callback<R> mCallback;
+
+        private final AtomicBoolean isReleased = new AtomicBoolean();
+
+        private int mAcquired;
+
+        private long mStartNanos;
+
+        private final Runnable mOnGranted = new Runnable() {
+            @Override
+            public void run() {
+                mAcquired++;
+                admit();
+            }
+        };
+
+        Admission(Bulkhead.Limiter[] limiters, Callback<R> callback) {
+            mLimiters = limiters;
+            mCallback = callback;
+        }
+
+        void admit() {
+            while (mAcquired < mLimiters.length) {
+                final int state = mLimiters[mAcquired].acquire(mOnGranted);
+                if (state == Bulkhead.Limiter.QUEUED) {
+                    return;
+                }
+                if (state == Bulkhead.Limiter.REJECTED) {
+                    releaseAll();
+                    mBulkhead.onRejected();
+                    mCallback.onFailure(BulkheadCall.this,
+                            new CallRejectedException(Bulkhead.CODE_REJECTED, "Bulkhead full"));
+                    return;
+                }
+                mAcquired++;
+            }
+            if (isCanceled()) {
+                releaseAll();
+                mCallback.onFailure(BulkheadCall.this, new IOException("Canceled"));
+                return;
+            }
+            mStartNanos = System.nanoTime();
+            delegate().enqueue(this);
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            final int code = response.code();
+            sample(code < 500 && code != 429);
+            releaseAll();
+            mCallback.onResponse(BulkheadCall.this, response);
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            if (!call.isCanceled()) {
+                sample(false);
+            }
+            releaseAll();
+            mCallback.onFailure(BulkheadCall.this, t);
+        }
+
+        private void sample(boolean success) {
+            final long latency = System.nanoTime() - mStartNanos;
+            for (Bulkhead.Limiter limiter : mLimiters) {
+                limiter.onSample(latency, success);
+            }
+        }
+
+        private void releaseAll() {
+            if (!isReleased.compareAndSet(false, true)) {
+                return;
+            }
+            for (int i = mAcquired - 1; i >= 0; i--) {
+                mLimiters[i].release();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+
+/**
+ * Per adapter components shared by every FutureResponseCall it creates.
+ */
+
+
+final class CallContext {
+
+    final CallbackDispatch dispatch;
+
+    /**
+     * Null if the body is a raw {@link ResponseBody}.
+     */
+    final SingleFlight singleFlight;
+
+    /**
+     * Null if the body is a raw {@link ResponseBody}.
+     */
+    final Prefetcher prefetcher;
+
+    /**
+     * Null if the adapter does not return a {@link Packable}.
+     */
+    final PackableFilterChain filters;
+
+    final PackableCache cache;
+
+    final DiskCacheStage diskCache;
+
+    final RetryPolicy retryPolicy;
+
+    final HedgePolicy hedgePolicy;
+
+    final Bulkhead bulkhead;
+
+    final Bulkhead.Limiter methodLimiter;
+
+    final CircuitBreaker.Circuit circuit;
+
+    final PriorityScheduler priorityScheduler;
+
+    /**
+     * Null if the service method is not {@link Batch}.
+     */
+    final Batcher batcher;
+
+    final int priority;
+
+    /**
+     * Null if no metrics listener, then no event is created.
+     */
+    final CallMetricsListener metrics;
+
+    final String endpoint;
+
+    /**
+     * Response type the adapter converts the body to, part of the request key.
+     */
+    final String responseType;
+
+    /**
+     * True if the adapter returns the raw {@link ResponseBody}, which is read once and so
+     * never shared by single flight or a prefetch.
+     */
+    final boolean isRawBody;
+
+    CallContext(CallbackDispatch dispatch, SingleFlight singleFlight, Prefetcher prefetcher,
+            PackableFilterChain filters, PackableCache cache, DiskCacheStage diskCache,
+            RetryPolicy retryPolicy,
+            HedgePolicy hedgePolicy, Bulkhead bulkhead, CircuitBreaker.Circuit circuit,
+            PriorityScheduler priorityScheduler, int priority, Batcher batcher,
+            CallMetricsListener metrics, String endpoint, Type responseType) {
+        this.dispatch = dispatch;
+        this.isRawBody = responseType instanceof Class
+                && ResponseBody.class.isAssignableFrom((Class<?>) responseType);
+        this.singleFlight = isRawBody ? null : singleFlight;
+        this.prefetcher = isRawBody ? null : prefetcher;
+        this.filters = filters;
+        this.cache = cache;
+        this.diskCache = diskCache;
+        this.retryPolicy = retryPolicy;
+        this.hedgePolicy = hedgePolicy;
+        this.bulkhead = bulkhead;
+        this.methodLimiter = bulkhead != null ? bulkhead.newMethodLimiter() : null;
+        this.circuit = circuit;
+        this.priorityScheduler = priorityScheduler;
+        this.priority = priority;
+        this.batcher = batcher;
+        this.metrics = metrics;
+        this.endpoint = endpoint;
+        this.responseType = responseType.toString();
+    }
+
+    /**
+     * Stack the network decorators of this adapter on the retrofit call.
+     */
+    <R> Call<R> decorate(Call<R> call) {
+        if (batcher != null) {
+            // a window waits outside admission, so its calls hold no permit or queued slot
+            // while it fills, and the batch request is admitted as one call.
+            return filter(new BatchCall<>(admit(call), batcher, this));
+        }
+        return prioritize(filter(guard(call)));
+    }
+
+    /**
+     * Decorate a request sent on behalf of calls of this adapter, such as a batch.
+     */
+    <R> Call<R> admit(Call<R> call) {
+        return prioritize(guard(call));
+    }
+
+    private <R> Call<R> guard(Call<R> call) {
+        Call<R> c = call;
+        if (metrics != null) {
+            c = new MetricsCall<>(c, metrics, endpoint);
+        }
+        if (circuit != null) {
+            c = new CircuitBreakerCall<>(c, circuit);
+        }
+        // every attempt of hedging and retry takes its own permit.
+        if (bulkhead != null) {
+            c = new BulkheadCall<>(c, bulkhead, methodLimiter);
+        }
+        if (hedgePolicy != null) {
+            c = new HedgingCall<>(c, hedgePolicy, endpoint);
+        }
+        if (retryPolicy != null) {
+            c = new RetryCall<>(c, retryPolicy);
+        }
+        return c;
+    }
+
+    private <R> Call<R> filter(Call<R> call) {
+        // once on the final response, before it is shared or cached.
+        return filters != null ? new FilterCall<>(call, filters, metrics, endpoint) : call;
+    }
+
+    private <R> Call<R> prioritize(Call<R> call) {
+        // a queued slot covers every attempt.
+        return priorityScheduler != null
+                ? new PriorityCall<>(call, priorityScheduler, priority) : call;
+    }
+}
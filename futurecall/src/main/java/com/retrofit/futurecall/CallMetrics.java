@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Default metrics of FutureCall, keeps lock-free latency histograms per endpoint.
+ */
+
+
+public final class CallMetrics extends CallMetricsListener {
+
+    private final ConcurrentMap<String, Stats> mStats = new ConcurrentHashMap<>();
+
+    @NonNull
+    public Set<String> endpoints() {
+        return Collections.unmodifiableSet(mStats.keySet());
+    }
+
+    /**
+     * @param endpoint such as "GET users/{id}".
+     */
+    @Nullable
+    public Stats stats(@NonNull String endpoint) {
+        return mStats.get(endpoint);
+    }
+
+    @Override
+    public void onSubmit(String endpoint) {
+        statsOf(endpoint).mSubmitCount.incrementAndGet();
+    }
+
+    @Override
+    public void onNetworkEnd(String endpoint, int code, long durationNanos) {
+        final Stats stats = statsOf(endpoint);
+        stats.network.record(durationNanos);
+        if (code < 200 || code >= 300) {
+            stats.mErrorCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onFilter(String endpoint, long durationNanos) {
+        statsOf(endpoint).filter.record(durationNanos);
+    }
+
+    @Override
+    public void onDispatch(String endpoint, long latencyNanos) {
+        statsOf(endpoint).dispatch.record(latencyNanos);
+    }
+
+    @Override
+    public void onBlocked(String endpoint, long durationNanos) {
+        statsOf(endpoint).blocked.record(durationNanos);
+    }
+
+    private Stats statsOf(String endpoint) {
+        Stats stats = mStats.get(endpoint);
+        if (stats == null) {
+            final Stats created = new Stats();
+            stats = mStats.putIfAbsent(endpoint, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    public static final class Stats {
+
+        /**
+         * Duration of network attempts.
+         */
+        public final Histogram network = new Histogram();
+
+        /**
+         * Time of packable filters.
+         */
+        public final Histogram filter = new Histogram();
+
+        /**
+         * Latency from completion to callbacks on the callback executor.
+         */
+        public final Histogram dispatch = new Histogram();
+
+        /**
+         * Time get() callers spent blocked.
+         */
+        public final Histogram blocked = new Histogram();
+
+        private final AtomicLong mSubmitCount = new AtomicLong();
+
+        private final AtomicLong mErrorCount = new AtomicLong();
+
+        Stats() {
+        }
+
+        public long submitCount() {
+            return mSubmitCount.get();
+        }
+
+        /**
+         * @return network attempts failed or not 2xx.
+         */
+        public long errorCount() {
+            return mErrorCount.get();
+        }
+    }
+
+    /**
+     * Log-linear histogram of durations in micros, like HdrHistogram with 3 sub-bucket bits,
+     * every value is recorded within 12.5% precision by a single atomic increment.
+     */
+    public static final class Histogram {
+
+        private static final int SUB_BITS = 3;
+
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+
+        /**
+         * Up to 2^40 micros, about 12 days.
+         */
+        private static final int MAX_EXPONENT = 40;
+
+        private final AtomicLongArray mCounts =
+                new AtomicLongArray((MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT);
+
+        private final AtomicLong mCount = new AtomicLong();
+
+        private final AtomicLong mSum = new AtomicLong();
+
+        private final AtomicLong mMax = new AtomicLong();
+
+        Histogram() {
+        }
+
+        void record(long nanos) {
+            final long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos));
+            mCounts.incrementAndGet(indexOf(micros));
+            mCount.incrementAndGet();
+            mSum.addAndGet(micros);
+            for (; ; ) {
+                final long max = mMax.get();
+                if (micros <= max || mMax.compareAndSet(max, micros)) {
+                    break;
+                }
+            }
+        }
+
+        public long count() {
+            return mCount.get();
+        }
+
+        /**
+         * @return mean in micros.
+         */
+        public long mean() {
+            final long count = mCount.get();
+            return count > 0 ? mSum.get() / count : 0L;
+        }
+
+        /**
+         * @return max in micros.
+         */
+        public long max() {
+            return mMax.get();
+        }
+
+        /**
+         * @param percentile in (0, 100], such as 99.
+         * @return upper bound in micros of the bucket holding the percentile.
+         */
+        public long percentile(double percentile) {
+            final long count = mCount.get();
+            if (count == 0L) {
+                return 0L;
+            }
+            final long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100d));
+            long seen = 0L;
+            for (int i = 0, size = mCounts.length(); i < size; i++) {
+                seen += mCounts.get(i);
+                if (seen >= rank) {
+                    return Math.min(lowerBoundOf(i + 1) - 1, mMax.get());
+                }
+            }
+            return mMax.get();
+        }
+
+        private static int indexOf(long micros) {
+            if (micros < SUB_COUNT) {
+                return (int) micros;
+            }
+            final int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(micros));
+            final int sub = (int) ((micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+            return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+        }
+
+        private static long lowerBoundOf(int index) {
+            if (index < SUB_COUNT) {
+                return index;
+            }
+            final int exponent = index / SUB_COUNT + SUB_BITS - 1;
+            final int sub = index % SUB_COUNT;
+            return (long) (SUB_COUNT + sub) << (exponent - SUB_BITS);
+        }
+    }
+}
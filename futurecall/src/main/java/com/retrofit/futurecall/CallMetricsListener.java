@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+/**
+ * Listener of FutureCall events for metrics, override the events in need. All durations are in
+ * nanos, events are delivered on the thread where they happen so they should return quickly.
+ * No event is created if no listener is set.
+ */
+
+
+public abstract class CallMetricsListener {
+
+    /**
+     * A FutureCall starts its execution, only once per FutureCall.
+     *
+     * @param endpoint such as "GET users/{id}".
+     */
+    public void onSubmit(String endpoint) {
+    }
+
+    /**
+     * A network attempt starts, retries and hedges start their own attempts.
+     */
+    public void onNetworkStart(String endpoint) {
+    }
+
+    /**
+     * @param code http code, or -1 if the attempt failed without a response.
+     */
+    public void onNetworkEnd(String endpoint, int code, long durationNanos) {
+    }
+
+    /**
+     * Packable filters ran on a response.
+     */
+    public void onFilter(String endpoint, long durationNanos) {
+    }
+
+    /**
+     * A callback ran on the callback executor.
+     *
+     * @param latencyNanos from the completion of the call to the callback.
+     */
+    public void onDispatch(String endpoint, long latencyNanos) {
+    }
+
+    /**
+     * A caller of get() is back from waiting.
+     *
+     * @param durationNanos time the caller spent blocked.
+     */
+    public void onBlocked(String endpoint, long durationNanos) {
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import java.io.IOException;
+
+/**
+ * Failure of a call rejected locally before it reached the server, such as by a full
+ * {@link Bulkhead} or an open {@link CircuitBreaker}. It is not retried by default.
+ */
+
+
+public final class CallRejectedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int mCode;
+
+    CallRejectedException(int code, String message) {
+        super(message);
+        this.mCode = code;
+    }
+
+    /**
+     * @return reason of the rejection, such as {@link Bulkhead#CODE_REJECTED}.
+     */
+    public int code() {
+        return mCode;
+    }
+}
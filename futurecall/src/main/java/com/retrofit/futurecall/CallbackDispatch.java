@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where enqueued callbacks run. By default they are posted to the retrofit callback executor,
+ * the main thread on android, a background consumer can run them {@link #immediate()} on the
+ * network thread instead, and many UI consumers can share one main thread message by
+ * {@link #mainBatched()}.
+ * <p>
+ * Callbacks whose target is gone, such as a {@link LiveCallback} of a destroyed activity or a
+ * collected {@link WeakCallback}, are dropped before posting.
+ */
+
+
+public abstract class CallbackDispatch {
+
+    private static final CallbackDispatch IMMEDIATE = new CallbackDispatch() {
+        @Override
+        void dispatch(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        boolean isImmediate() {
+            return true;
+        }
+    };
+
+    private final AtomicLong mMessageCount = new AtomicLong();
+
+    CallbackDispatch() {
+    }
+
+    /**
+     * Run callbacks on the thread that completes the call, such as the OkHttp thread.
+     */
+    @NonNull
+    public static CallbackDispatch immediate() {
+        return IMMEDIATE;
+    }
+
+    /**
+     * Post every callback to the executor, immediate if null.
+     */
+    @NonNull
+    public static CallbackDispatch on(@Nullable Executor executor) {
+        return executor != null ? new ExecutorDispatch(executor) : IMMEDIATE;
+    }
+
+    /**
+     * Post callbacks completed in a burst to the executor as one task.
+     */
+    @NonNull
+    public static CallbackDispatch batched(@NonNull Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor is null");
+        }
+        return new BatchedDispatch(executor);
+    }
+
+    /**
+     * Callbacks completed in a burst share one main thread message.
+     */
+    @NonNull
+    public static CallbackDispatch mainBatched() {
+        return MainHolder.DISPATCH;
+    }
+
+    /**
+     * @return tasks posted to the executor, zero if immediate.
+     */
+    public long messageCount() {
+        return mMessageCount.get();
+    }
+
+    abstract void dispatch(Runnable task);
+
+    boolean isImmediate() {
+        return false;
+    }
+
+    void onMessage() {
+        mMessageCount.incrementAndGet();
+    }
+
+    /**
+     * @return false if the callback has a target known to be gone.
+     */
+    static boolean isAlive(OnCallback<?> callback) {
+        return !(callback instanceof Liveness) || ((Liveness) callback).isAlive();
+    }
+
+    /**
+     * Callback that knows if its target is still there, wrappers forward to the wrapped one.
+     */
+    interface Liveness {
+
+        boolean isAlive();
+    }
+
+    private static final class ExecutorDispatch extends CallbackDispatch {
+
+        private final Executor mExecutor;
+
+        ExecutorDispatch(Executor executor) {
+            mExecutor = executor;
+        }
+
+        @Override
+        void dispatch(Runnable task) {
+            onMessage();
+            mExecutor.execute(task);
+        }
+    }
+
+    private static final class BatchedDispatch extends CallbackDispatch implements Runnable {
+
+        /**
+         * Callbacks run by one message at most, so a burst does not hold the thread too long.
+         */
+        private static final int MAX_BATCH = 64;
+
+        private final Executor mExecutor;
+
+        private final Queue<Runnable> mTasks = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean isScheduled = new AtomicBoolean();
+
+        BatchedDispatch(Executor executor) {
+            mExecutor = executor;
+        }
+
+        @Override
+        void dispatch(Runnable task) {
+            mTasks.offer(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!mTasks.isEmpty() && isScheduled.compareAndSet(false, true)) {
+                onMessage();
+                mExecutor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                for (int i = 0; i < MAX_BATCH && (task = mTasks.poll()) != null; i++) {
+                    task.run();
+                }
+            } finally {
+                isScheduled.set(false);
+                // tasks left over or offered while draining.
+                schedule();
+            }
+        }
+    }
+
+    private static final class MainHolder {
+
+        static final CallbackDispatch DISPATCH = new BatchedDispatch(new Executor() {
+
+            private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void execute(@NonNull Runnable command) {
+                mHandler.post(command);
+            }
+        });
+    }
+}
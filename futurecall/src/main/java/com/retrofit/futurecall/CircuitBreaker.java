@@ -0,0 +1,388 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Circuit breaker per endpoint, trips open when the failure rate or the slow call rate of a
+ * sliding window reaches its threshold, then calls are short-circuited with
+ * a {@link CallRejectedException} of {@link #CODE_OPEN} until a few half-open probes succeed.
+ */
+
+
+public final class CircuitBreaker {
+
+    /**
+     * {@link CallRejectedException#code()} of calls short-circuited by an open circuit.
+     */
+    public static final int CODE_OPEN = 497;
+
+    public static final int STATE_CLOSED = 0;
+
+    public static final int STATE_OPEN = 1;
+
+    public static final int STATE_HALF_OPEN = 2;
+
+    private int mFailureRate = 50;
+
+    private long mSlowCallNanos = Long.MAX_VALUE;
+
+    private int mSlowCallRate = 100;
+
+    private long mWindowMillis = TimeUnit.SECONDS.toMillis(10);
+
+    private int mMinimumCalls = 10;
+
+    private long mOpenMillis = TimeUnit.SECONDS.toMillis(5);
+
+    private int mHalfOpenCalls = 3;
+
+    private final ConcurrentMap<String, Circuit> mCircuits = new ConcurrentHashMap<>();
+
+    private final AtomicLong mShortCircuitedCount = new AtomicLong();
+
+    private CircuitBreaker() {
+    }
+
+    @NonNull
+    public static CircuitBreaker create() {
+        return new CircuitBreaker();
+    }
+
+    /**
+     * @param percent failure rate to trip the circuit, default 50.
+     */
+    @NonNull
+    public CircuitBreaker failureRate(int percent) {
+        mFailureRate = checkPercent(percent);
+        return this;
+    }
+
+    /**
+     * @param duration calls slower than it are slow calls.
+     * @param percent  slow call rate to trip the circuit.
+     */
+    @NonNull
+    public CircuitBreaker slowCall(long duration, TimeUnit unit, int percent) {
+        mSlowCallNanos = unit.toNanos(duration);
+        mSlowCallRate = checkPercent(percent);
+        return this;
+    }
+
+    /**
+     * @param window length of the sliding window, default 10 seconds.
+     */
+    @NonNull
+    public CircuitBreaker window(long window, TimeUnit unit) {
+        mWindowMillis = Math.max(Circuit.BUCKETS, unit.toMillis(window));
+        return this;
+    }
+
+    /**
+     * @param calls calls in the window before the rates are evaluated, default 10.
+     */
+    @NonNull
+    public CircuitBreaker minimumCalls(int calls) {
+        mMinimumCalls = Math.max(1, calls);
+        return this;
+    }
+
+    /**
+     * @param duration time an open circuit waits before half-open, default 5 seconds.
+     */
+    @NonNull
+    public CircuitBreaker openDuration(long duration, TimeUnit unit) {
+        mOpenMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * @param calls probes allowed while half-open, all must succeed to close, default 3.
+     */
+    @NonNull
+    public CircuitBreaker halfOpenCalls(int calls) {
+        mHalfOpenCalls = Math.max(1, calls);
+        return this;
+    }
+
+    /**
+     * @param endpoint such as "GET users/{id}".
+     * @return {@link #STATE_CLOSED}, {@link #STATE_OPEN} or {@link #STATE_HALF_OPEN}.
+     */
+    public int stateOf(@NonNull String endpoint) {
+        final Circuit circuit = mCircuits.get(endpoint);
+        return circuit != null ? circuit.state() : STATE_CLOSED;
+    }
+
+    public long shortCircuitedCount() {
+        return mShortCircuitedCount.get();
+    }
+
+    Circuit circuitOf(String endpoint) {
+        Circuit circuit = mCircuits.get(endpoint);
+        if (circuit == null) {
+            final Circuit created = new Circuit(this);
+            circuit = mCircuits.putIfAbsent(endpoint, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        return circuit;
+    }
+
+    private static int checkPercent(int percent) {
+        if (percent <= 0 || percent > 100) {
+            throw new IllegalArgumentException("percent must be in (0, 100]");
+        }
+        return percent;
+    }
+
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * State of one endpoint. The window is a ring of time buckets per stripe, each stripe is
+     * its own array picked by thread, so concurrent calls rarely update the same cache line.
+     * A stripe keeps running totals of its window, an evaluation reads only the totals.
+     */
+    static final class Circuit {
+
+        static final int DENIED = -1;
+
+        static final int PERMITTED = 0;
+
+        static final int PROBE = 1;
+
+        static final int BUCKETS = 10;
+
+        private static final int STRIPES = 4;
+
+        private static final int STATE_BITS = 2;
+
+        private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+
+        private final CircuitBreaker mConfig;
+
+        private final long mBucketMillis;
+
+        private final Stripe[] mStripes = new Stripe[STRIPES];
+
+        /**
+         * State in the low bits and the time it was opened above them, so a transition and
+         * its open time are published by one CAS.
+         */
+        private final AtomicLong mState = new AtomicLong(STATE_CLOSED);
+
+        private final AtomicInteger mProbes = new AtomicInteger();
+
+        private final AtomicInteger mProbeSuccesses = new AtomicInteger();
+
+        Circuit(CircuitBreaker config) {
+            this.mConfig = config;
+            this.mBucketMillis = config.mWindowMillis / BUCKETS;
+            for (int i = 0; i < STRIPES; i++) {
+                mStripes[i] = new Stripe();
+            }
+        }
+
+        int state() {
+            return (int) (mState.get() & STATE_MASK);
+        }
+
+        long slowCallNanos() {
+            return mConfig.mSlowCallNanos;
+        }
+
+        /**
+         * @return {@link #PERMITTED}, {@link #PROBE} or {@link #DENIED}.
+         */
+        int acquire() {
+            for (; ; ) {
+                final long word = mState.get();
+                final int state = (int) (word & STATE_MASK);
+                if (state == STATE_CLOSED) {
+                    return PERMITTED;
+                }
+                if (state == STATE_OPEN) {
+                    if (nowMillis() - (word >>> STATE_BITS) < mConfig.mOpenMillis) {
+                        break;
+                    }
+                    if (mState.compareAndSet(word, STATE_HALF_OPEN)) {
+                        mProbeSuccesses.set(0);
+                        mProbes.set(mConfig.mHalfOpenCalls);
+                    }
+                    continue;
+                }
+                for (; ; ) {
+                    final int probes = mProbes.get();
+                    if (probes <= 0) {
+                        break;
+                    }
+                    if (mProbes.compareAndSet(probes, probes - 1)) {
+                        return PROBE;
+                    }
+                }
+                break;
+            }
+            mConfig.mShortCircuitedCount.incrementAndGet();
+            return DENIED;
+        }
+
+        /**
+         * @param permit returned by {@link #acquire()}.
+         */
+        void onResult(int permit, boolean failure, boolean slow) {
+            if (permit == PROBE) {
+                if (failure || slow) {
+                    trip(STATE_HALF_OPEN);
+                } else if (mProbeSuccesses.incrementAndGet() >= mConfig.mHalfOpenCalls
+                        && mState.compareAndSet(STATE_HALF_OPEN, STATE_CLOSED)) {
+                    reset();
+                }
+                return;
+            }
+            final long epoch = nowMillis() / mBucketMillis;
+            mStripes[(int) (Thread.currentThread().getId() & (STRIPES - 1))]
+                    .record(epoch, failure, slow);
+            if (state() == STATE_CLOSED) {
+                evaluate(epoch);
+            }
+        }
+
+        /**
+         * Give back a probe canceled before its outcome is known.
+         */
+        void releaseProbe() {
+            if (state() == STATE_HALF_OPEN) {
+                mProbes.incrementAndGet();
+            }
+        }
+
+        /**
+         * Open the circuit, the open time is set only by the transition that wins.
+         */
+        private void trip(int from) {
+            mState.compareAndSet(from, nowMillis() << STATE_BITS | STATE_OPEN);
+        }
+
+        private void evaluate(long epoch) {
+            long calls = 0L;
+            long failures = 0L;
+            long slowCalls = 0L;
+            for (Stripe stripe : mStripes) {
+                stripe.advance(epoch);
+                calls += stripe.mTotals.get(Stripe.CALLS);
+                failures += stripe.mTotals.get(Stripe.FAILURES);
+                slowCalls += stripe.mTotals.get(Stripe.SLOW_CALLS);
+            }
+            if (calls < mConfig.mMinimumCalls) {
+                return;
+            }
+            if (failures * 100 >= calls * mConfig.mFailureRate
+                    || slowCalls * 100 >= calls * mConfig.mSlowCallRate) {
+                trip(STATE_CLOSED);
+            }
+        }
+
+        private void reset() {
+            for (Stripe stripe : mStripes) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Buckets of one stripe, counters of a bucket are added to the totals before the bucket
+     * and taken out of them when it leaves the window, so the totals never miss a count.
+     */
+    private static final class Stripe {
+
+        static final int CALLS = 0;
+
+        static final int FAILURES = 1;
+
+        static final int SLOW_CALLS = 2;
+
+        private static final int COUNTERS = 3;
+
+        final AtomicLongArray mTotals = new AtomicLongArray(COUNTERS);
+
+        private final AtomicLongArray mCounts = new AtomicLongArray(Circuit.BUCKETS * COUNTERS);
+
+        /**
+         * Newest bucket epoch of the window.
+         */
+        private final AtomicLong mEpoch = new AtomicLong();
+
+        void record(long epoch, boolean failure, boolean slow) {
+            advance(epoch);
+            final int base = (int) (epoch % Circuit.BUCKETS) * COUNTERS;
+            add(base, CALLS);
+            if (failure) {
+                add(base, FAILURES);
+            }
+            if (slow) {
+                add(base, SLOW_CALLS);
+            }
+        }
+
+        private void add(int base, int counter) {
+            mTotals.incrementAndGet(counter);
+            mCounts.incrementAndGet(base + counter);
+        }
+
+        /**
+         * Move the window to the epoch, expiring the buckets it leaves behind.
+         */
+        void advance(long epoch) {
+            for (; ; ) {
+                final long last = mEpoch.get();
+                if (epoch <= last) {
+                    return;
+                }
+                if (mEpoch.compareAndSet(last, epoch)) {
+                    // a late count of an expired epoch lands in the new bucket instead.
+                    for (long e = Math.max(last + 1, epoch - Circuit.BUCKETS + 1); e <= epoch;
+                            e++) {
+                        expire((int) (e % Circuit.BUCKETS) * COUNTERS);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void expire(int base) {
+            for (int counter = 0; counter < COUNTERS; counter++) {
+                mTotals.addAndGet(counter, -mCounts.getAndSet(base + counter, 0L));
+            }
+        }
+
+        void clear() {
+            for (int bucket = 0; bucket < Circuit.BUCKETS; bucket++) {
+                expire(bucket * COUNTERS);
+            }
+        }
+    }
+}
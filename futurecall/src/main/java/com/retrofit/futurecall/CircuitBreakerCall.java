@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Short-circuits the delegate while the circuit of its endpoint is open, and reports the outcome
+ * of calls let through.
+ */
+
+
+final class CircuitBreakerCall<R> extends ForwardingCall<R> {
+
+    private final CircuitBreaker.Circuit mCircuit;
+
+    CircuitBreakerCall(Call<R> delegate, CircuitBreaker.Circuit circuit) {
+        super(delegate);
+        this.mCircuit = circuit;
+    }
+
+    @Override
+    public void enqueue(final Callback<R> callback) {
+        final int permit = mCircuit.acquire();
+        if (permit == CircuitBreaker.Circuit.DENIED) {
+            callback.onFailure(this,
+                    new CallRejectedException(CircuitBreaker.CODE_OPEN, "Circuit open"));
+            return;
+        }
+        final long start = System.nanoTime();
+        delegate().enqueue(new Callback<R>() {
+            @Override
+            public void onResponse(Call<R> call, Response<R> response) {
+                mCircuit.onResult(permit, response.code() >= 500,
+                        System.nanoTime() - start > mCircuit.slowCallNanos());
+                callback.onResponse(CircuitBreakerCall.this, response);
+            }
+
+            @Override
+            public void onFailure(Call<R> call, Throwable t) {
+                if (!call.isCanceled()) {
+                    mCircuit.onResult(permit, true, false);
+                } else if (permit == CircuitBreaker.Circuit.PROBE) {
+                    mCircuit.releaseProbe();
+                }
+                callback.onFailure(CircuitBreakerCall.this, t);
+            }
+        });
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<R> clone() {
+        return new CircuitBreakerCall<>(delegate().clone(), mCircuit);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Data elements of a response decoded one by one while bytes arrive, so memory is bounded by
+ * one element rather than the whole array. Return FutureCall&lt;DataStream&lt;Foo&gt;&gt; from a
+ * {@link retrofit2.http.Streaming} service method and set a {@link DataStreamDecoder}.
+ * <p>
+ * A stream reads the network, iterate it off the main thread, and close it when done.
+ * Packable filters do not run on streams.
+ */
+
+
+public interface DataStream<T> extends Iterator<T>, Closeable {
+
+    /**
+     * @return code of the envelope, read before the data if it comes first.
+     */
+    int code();
+
+    /**
+     * @return message of the envelope, read before the data if it comes first.
+     */
+    String message();
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Decodes a response body into a {@link DataStream}, such as by a streaming json reader.
+ * The decoder should read the envelope up to the data array, then decode one element
+ * per {@link DataStream#next()}.
+ */
+
+
+public interface DataStreamDecoder {
+
+    /**
+     * @param body        streaming body, owned by the returned stream.
+     * @param elementType type of data elements, such as Foo of DataStream&lt;Foo&gt;.
+     */
+    @NonNull
+    <T> DataStream<T> decode(@NonNull ResponseBody body, @NonNull Type elementType)
+            throws IOException;
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent key-value store for cached responses: an append-only segment file plus
+ * a memory-mapped open addressing hash index, so a lookup costs one probe sequence
+ * and one positioned read. The segment is compacted when it grows over the byte cap.
+ * <p>
+ * Only depends on java.nio, can be used on a plain JVM. Guarded by a lock rather than a
+ * monitor, so it does not pin virtual threads during file io.
+ */
+
+
+public final class DiskCache implements Closeable {
+
+    private static final String SEGMENT_FILE = "futurecall.seg";
+
+    private static final String INDEX_FILE = "futurecall.idx";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int RECORD_MAGIC = 0x46435231;
+
+    private static final int INDEX_MAGIC = 0x46434931;
+
+    /**
+     * magic, keyLength, valueLength, writtenAt.
+     */
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    /**
+     * magic, capacity, count, padding, segmentLength.
+     */
+    private static final int INDEX_HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+
+    /**
+     * key hash, record offset + 1, 0 means empty slot.
+     */
+    private static final int SLOT_SIZE = 8 + 8;
+
+    private static final int MIN_CAPACITY = 256;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    private final File mDir;
+
+    private final long mMaxBytes;
+
+    private RandomAccessFile mSegmentFile;
+
+    private FileChannel mSegment;
+
+    private RandomAccessFile mIndexFile;
+
+    private MappedByteBuffer mIndex;
+
+    private int mCapacity;
+
+    private int mCount;
+
+    private long mLength;
+
+    private DiskCache(File dir, long maxBytes) {
+        this.mDir = dir;
+        this.mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @param dir      directory owned by this cache.
+     * @param maxBytes max bytes of the segment file, compacted if exceeded.
+     */
+    @NonNull
+    public static DiskCache open(@NonNull File dir, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can not create dir: " + dir);
+        }
+        final DiskCache cache = new DiskCache(dir, maxBytes);
+        cache.openFiles();
+        return cache;
+    }
+
+    @Nullable
+    public byte[] get(@NonNull String key) throws IOException {
+        mLock.lock();
+        try {
+            checkNotClosed();
+            final byte[] keyBytes = key.getBytes(UTF_8);
+            final int slot = findSlot(keyBytes, hash(keyBytes));
+            final long offset = slotOffset(slot);
+            if (offset < 0) {
+                return null;
+            }
+            final ByteBuffer header = readHeader(offset);
+            final int keyLength = header.getInt(4);
+            final ByteBuffer value = ByteBuffer.allocate(header.getInt(8));
+            readFully(value, offset + RECORD_HEADER_SIZE + keyLength);
+            return value.array();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public void put(@NonNull String key, @NonNull byte[] value) throws IOException {
+        mLock.lock();
+        try {
+            checkNotClosed();
+            final byte[] keyBytes = key.getBytes(UTF_8);
+            final long size = RECORD_HEADER_SIZE + keyBytes.length + value.length;
+            if (size > mMaxBytes) {
+                return;
+            }
+            final long offset = mLength;
+            final ByteBuffer record = ByteBuffer.allocate((int) size);
+            record.putInt(RECORD_MAGIC)
+                  .putInt(keyBytes.length)
+                  .putInt(value.length)
+                  .putLong(System.currentTimeMillis())
+                  .put(keyBytes)
+                  .put(value);
+            record.flip();
+            writeFully(mSegment, record, offset);
+            mLength = offset + size;
+            putSlot(keyBytes, hash(keyBytes), offset);
+            writeIndexHeader();
+            if (mLength > mMaxBytes) {
+                compact();
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public void clear() throws IOException {
+        mLock.lock();
+        try {
+            checkNotClosed();
+            mSegment.truncate(0);
+            mLength = 0;
+            resetIndex(MIN_CAPACITY);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return count of keys.
+     */
+    public int size() {
+        mLock.lock();
+        try {
+            return mCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return bytes of the segment file.
+     */
+    public long byteSize() {
+        mLock.lock();
+        try {
+            return mLength;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Rewrite live records, the newest first, until 3/4 of the byte cap is reached,
+     * older records are dropped.
+     */
+    public void compact() throws IOException {
+        mLock.lock();
+        try {
+            checkNotClosed();
+            final List<long[]> live = new ArrayList<>(mCount);
+            for (int slot = 0; slot < mCapacity; slot++) {
+                final long offset = slotOffset(slot);
+                if (offset >= 0) {
+                    final ByteBuffer header = readHeader(offset);
+                    final long size = RECORD_HEADER_SIZE + header.getInt(4) + header.getInt(8);
+                    live.add(new long[]{offset, size, header.getLong(12)});
+                }
+            }
+            Collections.sort(live, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] o1, long[] o2) {
+                    return o1[2] < o2[2] ? 1 : (o1[2] == o2[2] ? 0 : -1);
+                }
+            });
+            final long budget = mMaxBytes / 4 * 3;
+            long total = 0;
+            int keep = 0;
+            while (keep < live.size() && total + live.get(keep)[1] <= budget) {
+                total += live.get(keep)[1];
+                keep++;
+            }
+            final File tmp = new File(mDir, SEGMENT_FILE + ".tmp");
+            final RandomAccessFile tmpFile = new RandomAccessFile(tmp, "rw");
+            try {
+                final FileChannel out = tmpFile.getChannel();
+                out.truncate(0);
+                long position = 0;
+                // oldest first, so a later scan sees the same order.
+                for (int i = keep - 1; i >= 0; i--) {
+                    final long[] r = live.get(i);
+                    final ByteBuffer buf = ByteBuffer.allocate((int) r[1]);
+                    readFully(buf, r[0]);
+                    buf.flip();
+                    writeFully(out, buf, position);
+                    position += r[1];
+                }
+                out.force(false);
+            } finally {
+                tmpFile.close();
+            }
+            mSegmentFile.close();
+            final File segment = new File(mDir, SEGMENT_FILE);
+            if (!tmp.renameTo(segment)) {
+                throw new IOException("can not rename " + tmp + " to " + segment);
+            }
+            mSegmentFile = new RandomAccessFile(segment, "rw");
+            mSegment = mSegmentFile.getChannel();
+            rebuildIndex();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mLock.lock();
+        try {
+            if (mSegment == null) {
+                return;
+            }
+            mIndex.force();
+            mIndexFile.close();
+            mSegmentFile.close();
+            mIndex = null;
+            mSegment = null;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void openFiles() throws IOException {
+        mSegmentFile = new RandomAccessFile(new File(mDir, SEGMENT_FILE), "rw");
+        mSegment = mSegmentFile.getChannel();
+        mIndexFile = new RandomAccessFile(new File(mDir, INDEX_FILE), "rw");
+        final long indexLength = mIndexFile.length();
+        if (indexLength >= INDEX_HEADER_SIZE) {
+            map(indexLength);
+            final int capacity = mIndex.getInt(4);
+            if (mIndex.getInt(0) == INDEX_MAGIC
+                    && Integer.bitCount(capacity) == 1
+                    && indexLength == INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE
+                    && mIndex.getLong(16) == mSegment.size()) {
+                mCapacity = capacity;
+                mCount = mIndex.getInt(8);
+                mLength = mIndex.getLong(16);
+                return;
+            }
+        }
+        // index is missing or out of date, e.g. process killed while writing.
+        rebuildIndex();
+    }
+
+    /**
+     * Scan the segment and index every valid record, truncate at the first broken one.
+     */
+    private void rebuildIndex() throws IOException {
+        final long fileLength = mSegment.size();
+        resetIndex(MIN_CAPACITY);
+        mLength = 0;
+        long offset = 0;
+        while (offset + RECORD_HEADER_SIZE <= fileLength) {
+            final ByteBuffer header = readHeader(offset);
+            final int keyLength = header.getInt(4);
+            final int valueLength = header.getInt(8);
+            final long end = offset + RECORD_HEADER_SIZE + (long) keyLength + valueLength;
+            if (header.getInt(0) != RECORD_MAGIC || keyLength < 0 || valueLength < 0
+                    || end > fileLength) {
+                break;
+            }
+            final ByteBuffer key = ByteBuffer.allocate(keyLength);
+            readFully(key, offset + RECORD_HEADER_SIZE);
+            mLength = end;
+            putSlot(key.array(), hash(key.array()), offset);
+            offset = end;
+        }
+        if (mLength < fileLength) {
+            mSegment.truncate(mLength);
+        }
+        writeIndexHeader();
+    }
+
+    private void resetIndex(int capacity) throws IOException {
+        mIndexFile.setLength(0);
+        map(INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        mCapacity = capacity;
+        mCount = 0;
+        writeIndexHeader();
+    }
+
+    private void map(long length) throws IOException {
+        mIndexFile.setLength(length);
+        mIndex = mIndexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    private void writeIndexHeader() {
+        mIndex.putInt(0, INDEX_MAGIC);
+        mIndex.putInt(4, mCapacity);
+        mIndex.putInt(8, mCount);
+        mIndex.putLong(16, mLength);
+    }
+
+    private void putSlot(byte[] key, long hash, long offset) throws IOException {
+        final int slot = findSlot(key, hash);
+        final int position = slotPosition(slot);
+        if (mIndex.getLong(position + 8) == 0L) {
+            mCount++;
+        }
+        mIndex.putLong(position, hash);
+        mIndex.putLong(position + 8, offset + 1);
+        if (mCount * 2 > mCapacity) {
+            grow();
+        }
+    }
+
+    private void grow() throws IOException {
+        final int oldCapacity = mCapacity;
+        final long[] slots = new long[oldCapacity * 2];
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            final int position = slotPosition(slot);
+            slots[slot * 2] = mIndex.getLong(position);
+            slots[slot * 2 + 1] = mIndex.getLong(position + 8);
+        }
+        resetIndex(oldCapacity * 2);
+        final int mask = mCapacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            final long hash = slots[i * 2];
+            final long offset = slots[i * 2 + 1];
+            if (offset == 0L) {
+                continue;
+            }
+            int slot = (int) hash & mask;
+            while (mIndex.getLong(slotPosition(slot) + 8) != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            mIndex.putLong(slotPosition(slot), hash);
+            mIndex.putLong(slotPosition(slot) + 8, offset);
+            mCount++;
+        }
+        writeIndexHeader();
+    }
+
+    /**
+     * @return slot of the key, or the empty slot where it should be put.
+     */
+    private int findSlot(byte[] key, long hash) throws IOException {
+        final int mask = mCapacity - 1;
+        int slot = (int) hash & mask;
+        for (; ; ) {
+            final int position = slotPosition(slot);
+            final long offset = mIndex.getLong(position + 8);
+            if (offset == 0L) {
+                return slot;
+            }
+            if (mIndex.getLong(position) == hash && keyEquals(offset - 1, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(long offset, byte[] key) throws IOException {
+        final ByteBuffer header = readHeader(offset);
+        if (header.getInt(4) != key.length) {
+            return false;
+        }
+        final ByteBuffer stored = ByteBuffer.allocate(key.length);
+        readFully(stored, offset + RECORD_HEADER_SIZE);
+        return Arrays.equals(stored.array(), key);
+    }
+
+    /**
+     * @return offset of the record in slot, -1 if empty.
+     */
+    private long slotOffset(int slot) {
+        return mIndex.getLong(slotPosition(slot) + 8) - 1;
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private ByteBuffer readHeader(long offset) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(header, offset);
+        return header;
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            final int read = mSegment.read(buf, position + buf.position());
+            if (read < 0) {
+                throw new IOException("unexpected end of segment");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position)
+            throws IOException {
+        final long start = position - buf.position();
+        while (buf.hasRemaining()) {
+            channel.write(buf, start + buf.position());
+        }
+    }
+
+    private void checkNotClosed() {
+        if (mSegment == null) {
+            throw new IllegalStateException("DiskCache is closed");
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a.
+     */
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Converter;
+import retrofit2.Response;
+
+/**
+ * Persistent tier of the response cache, serves the last known good result of a request
+ * while a refresh runs. Bodies are encoded and decoded by retrofit converters of the
+ * response type.
+ */
+
+
+final class DiskCacheStage {
+
+    private static final String TAG = DiskCacheStage.class.getSimpleName();
+
+    private final DiskCache mDiskCache;
+
+    private final Converter<Object, RequestBody> mEncoder;
+
+    private final Converter<ResponseBody, ?> mDecoder;
+
+    private final Set<String> mRevalidating =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    DiskCacheStage(DiskCache diskCache, Converter<Object, RequestBody> encoder,
+            Converter<ResponseBody, ?> decoder) {
+        this.mDiskCache = diskCache;
+        this.mEncoder = encoder;
+        this.mDecoder = decoder;
+    }
+
+    /**
+     * @return last stored response of the key, null if none.
+     */
+    @Nullable
+    Response<?> load(String key) {
+        try {
+            final byte[] bytes = mDiskCache.get(key);
+            if (bytes == null) {
+                return null;
+            }
+            final Object body = mDecoder.convert(ResponseBody.create(null, bytes));
+            return body != null ? Response.success(body) : null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "load failure: " + e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Encode and write the body on the io thread, the callback path does not wait for it.
+     */
+    void store(final String key, Response<?> response) {
+        final Object body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            return;
+        }
+        FutureCallScheduler.io(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Buffer buffer = new Buffer();
+                    mEncoder.convert(body).writeTo(buffer);
+                    mDiskCache.put(key, buffer.readByteArray());
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "store failure: " + e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Wrap callback to store successful response.
+     *
+     * @param callback delegate, nullable if only store.
+     */
+    <R> Callback<R> storeOnResponse(final String key, @Nullable final Callback<R> callback) {
+        return new Callback<R>() {
+            @Override
+            public void onResponse(Call<R> call, Response<R> response) {
+                store(key, response);
+                if (callback != null) {
+                    callback.onResponse(call, response);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<R> call, Throwable t) {
+                if (callback != null) {
+                    callback.onFailure(call, t);
+                }
+            }
+        };
+    }
+
+    /**
+     * Refresh the stored result by the not executed call, at most one refresh per key.
+     */
+    <R> void revalidate(String key, Call<R> call, Callback<R> store) {
+        if (mRevalidating.add(key)) {
+            call.enqueue(new PackableCache.RevalidateCallback<>(mRevalidating, key, store));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import java.io.IOException;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Runs {@link PackableFilter}s once on a completed response, before single flight, a prefetch
+ * or the caches share it. An intercepted response is replaced by an error of
+ * {@link FuturePackableCall#CODE_INTERCEPT_PACK}, so every consumer sees the same outcome.
+ */
+
+
+final class FilterCall<R> extends ForwardingCall<R> {
+
+    private final PackableFilterChain mFilters;
+
+    private final CallMetricsListener mMetrics;
+
+    private final String mEndpoint;
+
+    FilterCall(Call<R> delegate, PackableFilterChain filters, CallMetricsListener metrics,
+            String endpoint) {
+        super(delegate);
+        this.mFilters = filters;
+        this.mMetrics = metrics;
+        this.mEndpoint = endpoint;
+    }
+
+    @Override
+    public Response<R> execute() throws IOException {
+        return filter(delegate().execute());
+    }
+
+    @Override
+    public void enqueue(final Callback<R> callback) {
+        delegate().enqueue(new Callback<R>() {
+            @Override
+            public void onResponse(Call<R> call, Response<R> response) {
+                callback.onResponse(FilterCall.this, filter(response));
+            }
+
+            @Override
+            public void onFailure(Call<R> call, Throwable t) {
+                callback.onFailure(FilterCall.this, t);
+            }
+        });
+    }
+
+    private Response<R> filter(Response<R> response) {
+        final R body = response.body();
+        if (!response.isSuccessful() || !(body instanceof Packable)) {
+            return response;
+        }
+        final CallMetricsListener metrics = mMetrics;
+        final long start = metrics != null ? System.nanoTime() : 0L;
+        final boolean intercepted = mFilters.doFilter((Packable<?>) body);
+        if (metrics != null) {
+            metrics.onFilter(mEndpoint, System.nanoTime() - start);
+        }
+        if (!intercepted) {
+            return response;
+        }
+        return Response.error(FuturePackableCall.CODE_INTERCEPT_PACK,
+                new FutureResponseCall.NoContentResponseBody(
+                        new IOException("packable intercepted")));
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<R> clone() {
+        return new FilterCall<>(delegate().clone(), mFilters, mMetrics, mEndpoint);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.io.IOException;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Base of {@link Call} decorators which add behaviour around the network execution,
+ * such as retry. Decorators are stacked by the adapter and cloned together.
+ */
+
+
+abstract class ForwardingCall<R> implements Call<R> {
+
+    private final Call<R> mDelegate;
+
+    private volatile long mDeadline;
+
+    ForwardingCall(Call<R> delegate) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate is null");
+        }
+        this.mDelegate = delegate;
+    }
+
+    final Call<R> delegate() {
+        return mDelegate;
+    }
+
+    /**
+     * Deadline of the caller blocked in get(), no new attempt should start after it.
+     *
+     * @param deadline {@link System#nanoTime()} based.
+     */
+    void deadline(long deadline) {
+        final long old = mDeadline;
+        if (old == 0L || deadline - old < 0L) {
+            mDeadline = deadline;
+        }
+        if (mDelegate instanceof ForwardingCall) {
+            ((ForwardingCall<R>) mDelegate).deadline(deadline);
+        }
+    }
+
+    /**
+     * @return true if time remains before the deadline, or no deadline.
+     */
+    final boolean hasTimeBeforeDeadline(long nanos) {
+        final long deadline = mDeadline;
+        return deadline == 0L || deadline - (System.nanoTime() + nanos) > 0L;
+    }
+
+    @Override
+    public Response<R> execute() throws IOException {
+        return mDelegate.execute();
+    }
+
+    @Override
+    public void enqueue(Callback<R> callback) {
+        mDelegate.enqueue(callback);
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return mDelegate.isExecuted();
+    }
+
+    @Override
+    public void cancel() {
+        mDelegate.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return mDelegate.isCanceled();
+    }
+
+    @Override
+    public Request request() {
+        return mDelegate.request();
+    }
+
+    @SuppressWarnings("CloneDoesntDeclareCloneNotSupportedException")
+    @Override
+    public abstract Call<R> clone();
+}
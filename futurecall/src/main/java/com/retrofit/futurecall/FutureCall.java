@@ -33,6 +33,9 @@ public interface FutureCall<T> extends Cloneable {
     FutureCall<T> submit();
 
     /**
+     * Submit this FutureCall if need. Any number of callbacks can be enqueued, before or after
+     * completion, they share one request.
+     *
      * @param callback response callback.
      * @return this FutureCall.
      */
@@ -41,6 +44,7 @@ public interface FutureCall<T> extends Cloneable {
 
     /**
      * This method is blocked! Until the result is obtained.
+     * The caller parks without holding any monitor, so it is cheap on JVM virtual threads.
      *
      * @return success data,other null, if failure.
      */
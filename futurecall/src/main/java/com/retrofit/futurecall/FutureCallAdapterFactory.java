@@ -16,19 +16,24 @@ package com.retrofit.futurecall;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.CallAdapter;
+import retrofit2.Converter;
 import retrofit2.Response;
 import retrofit2.Retrofit;
+import retrofit2.http.Streaming;
 
 /**
  * Created by wangjie2013
@@ -38,9 +43,43 @@ import retrofit2.Retrofit;
 
 public class FutureCallAdapterFactory<P extends Packable> extends CallAdapter.Factory {
 
+    private static final String TAG = FutureCallAdapterFactory.class.getSimpleName();
+
     private final Class<P> mWrapType;
 
-    private List<PackableFilter<P>> mFilters = new ArrayList<>();
+    private final PackableFilterChain mFilters = new PackableFilterChain();
+
+    /**
+     * Resolved adapter plans by return type, services may declare hundreds of methods.
+     */
+    private final ConcurrentMap<Type, AdapterPlan> mPlans = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, BatchAdapter<?>> mBatchAdapters =
+            new ConcurrentHashMap<>();
+
+    private SingleFlight mSingleFlight;
+
+    private Prefetcher mPrefetcher;
+
+    private PackableCache mCache;
+
+    private DiskCache mDiskCache;
+
+    private RetryPolicy mRetryPolicy;
+
+    private HedgePolicy mHedgePolicy;
+
+    private Bulkhead mBulkhead;
+
+    private CircuitBreaker mCircuitBreaker;
+
+    private PriorityScheduler mPriorityScheduler;
+
+    private CallMetricsListener mMetrics;
+
+    private CallbackDispatch mDispatch;
+
+    private DataStreamDecoder mStreamDecoder;
 
     private FutureCallAdapterFactory(Class<P> wrapType) {
         this.mWrapType = wrapType;
@@ -69,68 +108,369 @@ public class FutureCallAdapterFactory<P extends Packable> extends CallAdapter.Fa
         mFilters.remove(filter);
     }
 
+    /**
+     * Identical in-flight GET requests share one network execution, except those returning
+     * a raw ResponseBody or DataStream, must be enabled before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> enableSingleFlight() {
+        if (mSingleFlight == null) {
+            mSingleFlight = new SingleFlight();
+        }
+        return this;
+    }
+
+    /**
+     * @return single flight metrics, null if not enabled.
+     */
+    @Nullable
+    public SingleFlight getSingleFlight() {
+        return mSingleFlight;
+    }
+
+    /**
+     * Calls of services attach to identical GET requests submitted ahead of time by
+     * {@link Prefetcher#prefetch(FutureCall)}, except those returning a raw ResponseBody or
+     * DataStream, must be set before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setPrefetcher(@Nullable Prefetcher prefetcher) {
+        mPrefetcher = prefetcher;
+        return this;
+    }
+
+    @Nullable
+    public Prefetcher getPrefetcher() {
+        return mPrefetcher;
+    }
+
+    /**
+     * Cache successful {@link Packable} results of GET requests,
+     * must be set before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setCache(@Nullable PackableCache cache) {
+        mCache = cache;
+        return this;
+    }
+
+    @Nullable
+    public PackableCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Persist successful {@link Packable} results of GET requests, the first request after
+     * process start is served by the last known good result while a refresh runs.
+     * Results are encoded by the request body converter of retrofit, such as gson.
+     * Must be set before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setDiskCache(@Nullable DiskCache diskCache) {
+        mDiskCache = diskCache;
+        return this;
+    }
+
+    @Nullable
+    public DiskCache getDiskCache() {
+        return mDiskCache;
+    }
+
+    /**
+     * Default retry policy of service methods, a method can override it by {@link Retry}.
+     * Must be set before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setRetryPolicy(@Nullable RetryPolicy policy) {
+        mRetryPolicy = policy;
+        return this;
+    }
+
     @Nullable
     @Override
     public CallAdapter<?, ?> get(@NonNull Type returnType, Annotation[] annotations,
             Retrofit retrofit) {
-        final Class<?> rawReturnType = getRawType(returnType);
-        if (rawReturnType == FutureCall.class) {
-            if (!(returnType instanceof ParameterizedType)) {
-                throw new IllegalStateException("return type must be parameterized.");
+        AdapterPlan plan = mPlans.get(returnType);
+        if (plan == null) {
+            if (getRawType(returnType) != FutureCall.class) {
+                return null;
             }
-            final Class<? extends Packable> wrapType = mWrapType;
-            final Type resType = getParameterUpperBound(0, (ParameterizedType) returnType);
-            final Class<?> rawResType = getRawType(resType);
-            boolean isPack = false;
-            boolean isPackData = false;
-            boolean noWrap = false;
-            Type type;
-            if (wrapType == null) {
-                type = resType;
-                noWrap = true;
-            } else if (rawResType == Response.class) {
-                if (!(resType instanceof ParameterizedType)) {
-                    throw new IllegalStateException("Response must be parameterized"
-                            + " as Response<Foo> or Response<? extends Foo>");
-                }
-                type = getParameterUpperBound(0, (ParameterizedType) resType);
-            } else if (rawResType == wrapType) {
-                if (!(resType instanceof ParameterizedType)) {
-                    throw new IllegalStateException(wrapType + " must be parameterized"
-                            + " as " + wrapType + "<Foo>"
-                            + " or " + wrapType + "<? extends Foo>");
+            plan = resolve(returnType);
+            final AdapterPlan prev = mPlans.putIfAbsent(returnType, plan);
+            if (prev != null) {
+                plan = prev;
+            }
+        }
+        final boolean cacheable = plan.isPack || plan.isPackData;
+        final boolean isStream = plan.elementType != null;
+        if (isStream) {
+            checkStreamable(annotations);
+        }
+        final String endpoint = RequestKey.endpoint(annotations);
+        final CallbackDispatch dispatch = mDispatch;
+        final CallContext context = new CallContext(
+                dispatch != null ? dispatch : CallbackDispatch.on(retrofit.callbackExecutor()),
+                mSingleFlight, mPrefetcher,
+                cacheable ? mFilters : null, cacheable ? mCache : null,
+                cacheable ? createDiskCacheStage(plan.responseType, annotations, retrofit) : null,
+                retryPolicyOf(annotations), mHedgePolicy, mBulkhead,
+                mCircuitBreaker != null ? mCircuitBreaker.circuitOf(endpoint) : null,
+                mPriorityScheduler, priorityOf(annotations),
+                isStream ? null : batcherOf(annotations), mMetrics, endpoint, plan.responseType);
+        return new FutureCallAdapter<>(plan.responseType, context, plan.isPack,
+                plan.isPackData, plan.noWrap, mWrapType, plan.elementType,
+                mStreamDecoder);
+    }
+
+    private AdapterPlan resolve(Type returnType) {
+        if (!(returnType instanceof ParameterizedType)) {
+            throw new IllegalStateException("return type must be parameterized.");
+        }
+        final Class<? extends Packable> wrapType = mWrapType;
+        final Type resType = getParameterUpperBound(0, (ParameterizedType) returnType);
+        final Class<?> rawResType = getRawType(resType);
+        if (rawResType == DataStream.class) {
+            if (!(resType instanceof ParameterizedType)) {
+                throw new IllegalStateException("DataStream must be parameterized"
+                        + " as DataStream<Foo> or DataStream<? extends Foo>");
+            }
+            return new AdapterPlan(ResponseBody.class, false, false, false,
+                    getParameterUpperBound(0, (ParameterizedType) resType));
+        }
+        boolean isPack = false;
+        boolean isPackData = false;
+        boolean noWrap = false;
+        Type type;
+        if (wrapType == null) {
+            type = resType;
+            noWrap = true;
+        } else if (rawResType == Response.class) {
+            if (!(resType instanceof ParameterizedType)) {
+                throw new IllegalStateException("Response must be parameterized"
+                        + " as Response<Foo> or Response<? extends Foo>");
+            }
+            type = getParameterUpperBound(0, (ParameterizedType) resType);
+        } else if (rawResType == wrapType) {
+            if (!(resType instanceof ParameterizedType)) {
+                throw new IllegalStateException(wrapType + " must be parameterized"
+                        + " as " + wrapType + "<Foo>"
+                        + " or " + wrapType + "<? extends Foo>");
+            }
+            type = resType;
+            isPack = true;
+        } else if (IData.class.isAssignableFrom(rawResType)) {
+            type = ParameterizedTypeAdapter.create(wrapType, resType);
+            isPackData = true;
+        } else if (rawResType.isArray()
+                && IData.class.isAssignableFrom(rawResType.getComponentType())) {
+            type = ParameterizedTypeAdapter.create(wrapType, resType);
+            isPackData = true;
+        } else if (Collection.class.isAssignableFrom(rawResType)
+                && resType instanceof ParameterizedType
+                && IData.class.isAssignableFrom(
+                getRawType(getParameterUpperBound(0, (ParameterizedType) resType)))) {
+            type = ParameterizedTypeAdapter.create(wrapType, resType);
+            isPackData = true;
+        } else {
+            type = resType;
+            noWrap = true;
+        }
+        return new AdapterPlan(type, isPack, isPackData, noWrap, null);
+    }
+
+    /**
+     * Hedge slow idempotent requests, must be set before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setHedgePolicy(@Nullable HedgePolicy policy) {
+        mHedgePolicy = policy;
+        return this;
+    }
+
+    /**
+     * Limit concurrent calls per host and per service method, must be set before retrofit
+     * create service.
+     */
+    public FutureCallAdapterFactory<P> setBulkhead(@Nullable Bulkhead bulkhead) {
+        mBulkhead = bulkhead;
+        return this;
+    }
+
+    /**
+     * Short-circuit calls of an endpoint while its backend is degraded, must be set before
+     * retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setCircuitBreaker(@Nullable CircuitBreaker breaker) {
+        mCircuitBreaker = breaker;
+        return this;
+    }
+
+    /**
+     * Combine calls of {@link Batch} service methods with this name into one batch request,
+     * must be added before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> addBatchAdapter(@NonNull String name,
+            @NonNull BatchAdapter<?> adapter) {
+        if (name == null) {
+            throw new NullPointerException("name is null");
+        }
+        if (adapter == null) {
+            throw new NullPointerException("adapter is null");
+        }
+        mBatchAdapters.put(name, adapter);
+        return this;
+    }
+
+    /**
+     * Queue calls by {@link Priority} in front of the network, must be set before retrofit
+     * create service.
+     */
+    public FutureCallAdapterFactory<P> setPriorityScheduler(
+            @Nullable PriorityScheduler scheduler) {
+        mPriorityScheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Listen to call events for metrics such as {@link CallMetrics}, must be set before
+     * retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setMetricsListener(@Nullable CallMetricsListener l) {
+        mMetrics = l;
+        return this;
+    }
+
+    /**
+     * Default dispatch of enqueued callbacks, the retrofit callback executor if null,
+     * a call can override it by {@link FutureCallHelper#dispatchOn(FutureCall, CallbackDispatch)}.
+     * Must be set before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setCallbackDispatch(@Nullable CallbackDispatch dispatch) {
+        mDispatch = dispatch;
+        return this;
+    }
+
+    /**
+     * Decoder of {@link DataStream} results, must be set before retrofit create service.
+     */
+    public FutureCallAdapterFactory<P> setStreamDecoder(@Nullable DataStreamDecoder decoder) {
+        mStreamDecoder = decoder;
+        return this;
+    }
+
+    private void checkStreamable(Annotation[] annotations) {
+        if (mStreamDecoder == null) {
+            throw new IllegalStateException("DataStream needs a DataStreamDecoder,"
+                    + " see setStreamDecoder.");
+        }
+        for (Annotation a : annotations) {
+            if (a instanceof Streaming) {
+                return;
+            }
+        }
+        // retrofit buffers the whole body without it.
+        throw new IllegalStateException("DataStream method must be annotated with @Streaming.");
+    }
+
+    @Nullable
+    private Batcher batcherOf(Annotation[] annotations) {
+        for (Annotation a : annotations) {
+            if (a instanceof Batch) {
+                final Batch batch = (Batch) a;
+                final BatchAdapter<?> adapter = mBatchAdapters.get(batch.value());
+                if (adapter == null) {
+                    throw new IllegalStateException("no batch adapter named " + batch.value()
+                            + ", see addBatchAdapter.");
                 }
-                type = resType;
-                isPack = true;
-            } else if (IData.class.isAssignableFrom(rawResType)) {
-                type = ParameterizedTypeAdapter.create(wrapType, resType);
-                isPackData = true;
-            } else if (rawResType.isArray()
-                    && IData.class.isAssignableFrom(rawResType.getComponentType())) {
-                type = ParameterizedTypeAdapter.create(wrapType, resType);
-                isPackData = true;
-            } else if (Collection.class.isAssignableFrom(rawResType)
-                    && resType instanceof ParameterizedType
-                    && IData.class.isAssignableFrom(
-                    getRawType(getParameterUpperBound(0, (ParameterizedType) resType)))) {
-                type = ParameterizedTypeAdapter.create(wrapType, resType);
-                isPackData = true;
-            } else {
-                type = resType;
-                noWrap = true;
+                return new Batcher(adapter, batch);
             }
-            return new FutureCallAdapter<>(type, retrofit.callbackExecutor(), isPack,
-                    isPackData, noWrap, wrapType, mFilters);
         }
         return null;
     }
 
+    @Nullable
+    private RetryPolicy retryPolicyOf(Annotation[] annotations) {
+        for (Annotation a : annotations) {
+            if (a instanceof Retry) {
+                return RetryPolicy.create((Retry) a);
+            }
+        }
+        return mRetryPolicy;
+    }
+
+    private static int priorityOf(Annotation[] annotations) {
+        for (Annotation a : annotations) {
+            if (a instanceof Priority) {
+                final int priority = ((Priority) a).value();
+                if (priority < Priority.INTERACTIVE || priority > Priority.BACKGROUND) {
+                    throw new IllegalStateException("unknown priority: " + priority);
+                }
+                return priority;
+            }
+        }
+        return Priority.NORMAL;
+    }
+
+    /**
+     * @return request body converter of the response type, null if retrofit has none.
+     */
+    @Nullable
+    private static Converter<Object, RequestBody> encoderOf(Type type, Annotation[] annotations,
+            Retrofit retrofit) {
+        try {
+            return retrofit.requestBodyConverter(type, new Annotation[0], annotations);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "no encoder of " + type + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Nullable
+    private DiskCacheStage createDiskCacheStage(Type type, Annotation[] annotations,
+            Retrofit retrofit) {
+        final DiskCache diskCache = mDiskCache;
+        if (diskCache == null) {
+            return null;
+        }
+        final Converter<Object, RequestBody> encoder = encoderOf(type, annotations, retrofit);
+        if (encoder == null) {
+            Log.w(TAG, "disk cache is disabled for " + type);
+            return null;
+        }
+        try {
+            return new DiskCacheStage(diskCache, encoder,
+                    retrofit.responseBodyConverter(type, annotations));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "disk cache is disabled for " + type + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static final class AdapterPlan {
+
+        final Type responseType;
+
+        final boolean isPack;
+
+        final boolean isPackData;
+
+        final boolean noWrap;
+
+        /**
+         * Element type of a {@link DataStream} result, null if not a stream.
+         */
+        final Type elementType;
+
+        AdapterPlan(Type responseType, boolean isPack, boolean isPackData, boolean noWrap,
+                Type elementType) {
+            this.responseType = responseType;
+            this.isPack = isPack;
+            this.isPackData = isPackData;
+            this.noWrap = noWrap;
+            this.elementType = elementType;
+        }
+    }
+
     private static class FutureCallAdapter<R, P extends Packable>
             implements CallAdapter<R, FutureCall> {
 
         private final Type responseType;
 
-        private final Executor mCallbackExecutor;
+        private final CallContext mContext;
 
         private final boolean isPackData;
 
@@ -140,21 +480,25 @@ public class FutureCallAdapterFactory<P extends Packable> extends CallAdapter.Fa
 
         private final Class<? extends Packable> packClz;
 
-        private List<PackableFilter<P>> mFilters;
+        private final Type elementType;
+
+        private final DataStreamDecoder mStreamDecoder;
 
-        FutureCallAdapter(Type responseType, Executor callbackExecutor,
+        FutureCallAdapter(Type responseType, CallContext context,
                 boolean isPack,
                 boolean isPackData,
                 boolean noWrap,
                 Class<? extends Packable> packClz,
-                List<PackableFilter<P>> filters) {
+                Type elementType,
+                DataStreamDecoder streamDecoder) {
             this.responseType = responseType;
-            this.mCallbackExecutor = callbackExecutor;
+            this.mContext = context;
             this.isPack = isPack;
             this.isPackData = isPackData;
             this.noWrap = noWrap;
             this.packClz = packClz;
-            this.mFilters = filters;
+            this.elementType = elementType;
+            this.mStreamDecoder = streamDecoder;
         }
 
         @Override
@@ -165,12 +509,16 @@ public class FutureCallAdapterFactory<P extends Packable> extends CallAdapter.Fa
         @SuppressWarnings("unchecked")
         @Override
         public FutureCall adapt(@NonNull Call<R> call) {
-            FutureResponseCall<?> respCall = new FutureResponseCall<>(call, mCallbackExecutor);
+            FutureResponseCall<?> respCall =
+                    new FutureResponseCall<>(mContext.decorate(call), mContext);
             FutureCall future = respCall;
-            if (isPack) {
-                future = new FuturePackableCall(respCall, packClz, mFilters);
+            if (elementType != null) {
+                future = new FutureStreamCall<>((FutureResponseCall<ResponseBody>) respCall,
+                        mStreamDecoder, elementType);
+            } else if (isPack) {
+                future = new FuturePackableCall(respCall, packClz);
             } else if (isPackData) {
-                FuturePackableCall<?> c = new FuturePackableCall(respCall, packClz, mFilters);
+                FuturePackableCall<?> c = new FuturePackableCall(respCall, packClz);
                 future = new FutureDataCall(c);
             } else if (noWrap) {
                 future = new FutureCallImpl(respCall);
@@ -208,6 +556,45 @@ public class FutureCallAdapterFactory<P extends Packable> extends CallAdapter.Fa
         public Type getOwnerType() {
             return null;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ParameterizedType)) {
+                return false;
+            }
+            final ParameterizedType that = (ParameterizedType) o;
+            return that.getOwnerType() == null
+                    && mRawType.equals(that.getRawType())
+                    && Arrays.equals(mActualType, that.getActualTypeArguments());
+        }
+
+        /**
+         * Same as {@link ParameterizedType} implementation of jdk and libcore.
+         */
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(mActualType) ^ mRawType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(typeToString(mRawType));
+            if (mActualType.length > 0) {
+                sb.append('<').append(typeToString(mActualType[0]));
+                for (int i = 1; i < mActualType.length; i++) {
+                    sb.append(", ").append(typeToString(mActualType[i]));
+                }
+                sb.append('>');
+            }
+            return sb.toString();
+        }
+
+        private static String typeToString(Type type) {
+            return type instanceof Class ? ((Class<?>) type).getName() : type.toString();
+        }
     }
 }
 
@@ -14,9 +14,15 @@
 
 package com.retrofit.futurecall;
 
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -47,10 +53,121 @@ public final class FutureCallHelper {
         return null;
     }
 
+    /**
+     * Non-blocking completion hook, submit the call if need.
+     * The callback is invoked on the thread that completes the call, without posting to
+     * the callback executor, or immediately if the call has already completed.
+     * Any number of callbacks can be added. A callback that throws from onResponse
+     * gets onError. A FutureCall not created by {@link FutureCallAdapterFactory} is
+     * enqueued instead.
+     *
+     * @param callback completion callback, should be quick and never block.
+     * @return the call.
+     */
+    @NonNull
+    public static <T> FutureCall<T> whenComplete(@NonNull FutureCall<T> call,
+            @NonNull OnCallback<T> callback) {
+        if (call instanceof AbsFutureCall) {
+            return ((AbsFutureCall<T>) call).whenComplete(callback);
+        }
+        return call.enqueue(callback);
+    }
+
+    /**
+     * Dispatch of callbacks enqueued to the call after this, overrides the one of the adapter
+     * factory. Does nothing to a FutureCall not created by {@link FutureCallAdapterFactory}.
+     *
+     * @return the call.
+     */
+    @NonNull
+    public static <T> FutureCall<T> dispatchOn(@NonNull FutureCall<T> call,
+            @NonNull CallbackDispatch dispatch) {
+        if (call instanceof AbsFutureCall) {
+            return ((AbsFutureCall<T>) call).dispatchOn(dispatch);
+        }
+        return call;
+    }
+
+    /**
+     * Priority of the call in the {@link PriorityScheduler} of the adapter factory, overrides
+     * the one of {@link Priority}. Once queued, the call can only be moved to a higher priority.
+     * Does nothing if the factory has no scheduler, or to a FutureCall not created by
+     * {@link FutureCallAdapterFactory}.
+     *
+     * @param priority such as {@link Priority#INTERACTIVE}.
+     * @return the call.
+     */
+    @NonNull
+    public static <T> FutureCall<T> priority(@NonNull FutureCall<T> call, int priority) {
+        if (call instanceof AbsFutureCall) {
+            return ((AbsFutureCall<T>) call).priority(priority);
+        }
+        return call;
+    }
+
+    /**
+     * Cause of a failed call, such as a {@link CallRejectedException} of a full
+     * {@link Bulkhead} or an open {@link CircuitBreaker}. Useful where get() returned null or
+     * from {@link OnCallback#onError()}.
+     *
+     * @return null if the call did not fail, or is not created by
+     * {@link FutureCallAdapterFactory}.
+     */
+    @Nullable
+    public static Throwable failureOf(@NonNull FutureCall<?> call) {
+        if (call instanceof AbsFutureCall) {
+            return ((AbsFutureCall<?>) call).responseCall().failure();
+        }
+        return null;
+    }
+
+    /**
+     * Bridge FutureCall to CompletableFuture, submit the call if need.
+     * The future is completed on the thread that completes the call, no thread is parked.
+     * Cancel the future will cancel the call.
+     *
+     * @return future completed with success data, or exceptionally with the failure.
+     */
+    @NonNull
+    @RequiresApi(Build.VERSION_CODES.N)
+    public static <T> CompletableFuture<T> toCompletableFuture(
+            @NonNull final FutureCall<T> call) {
+        final CallCompletableFuture<T> future = new CallCompletableFuture<>(call);
+        whenComplete(call, new OnCallback<T>() {
+            @Override
+            public void onResponse(int code, String message, T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onError() {
+                final Throwable t = failureOf(call);
+                future.completeExceptionally(t != null ? t : new IOException("request failure"));
+            }
+        });
+        return future;
+    }
+
     public static <T> List<T> makeUnmodifiableList(List<T> items) {
         if (items == null || items.size() == 0) {
             return Collections.emptyList();
         }
         return Collections.unmodifiableList(items);
     }
+
+    @RequiresApi(Build.VERSION_CODES.N)
+    private static final class CallCompletableFuture<T> extends CompletableFuture<T> {
+
+        private final FutureCall<T> mCall;
+
+        CallCompletableFuture(FutureCall<T> call) {
+            mCall = call;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            mCall.cancel();
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
 }
@@ -46,22 +46,35 @@ class FutureCallImpl<T> extends AbsFutureCall<T> {
 
     @NonNull
     @Override
-    public FutureCall<T> enqueue(final OnCallback<T> callback) {
-        checkIsExecuted(mDelegate);
+    public FutureCall<T> enqueue(OnCallback<T> callback) {
         if (callback == null) {
             throw new NullPointerException("callback is null");
         }
-        mDelegate.enqueue(new OnCallback<Response<T>>() {
-            @Override
-            public void onResponse(int code, String message, Response<T> result) {
-                callback.onResponse(code, message, result.body());
-            }
-
-            @Override
-            public void onError() {
-                callback.onError();
-            }
-        });
+        mDelegate.enqueue(new OnBodyCallback<>(callback));
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<T> dispatchOn(@NonNull CallbackDispatch dispatch) {
+        mDelegate.dispatchOn(dispatch);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<T> priority(int priority) {
+        mDelegate.priority(priority);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<T> whenComplete(OnCallback<T> callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback is null");
+        }
+        mDelegate.whenComplete(new OnBodyCallback<>(callback));
         return this;
     }
 
@@ -73,6 +86,11 @@ class FutureCallImpl<T> extends AbsFutureCall<T> {
         return resp != null ? resp.body() : null;
     }
 
+    @Override
+    FutureResponseCall<?> responseCall() {
+        return mDelegate;
+    }
+
     @Override
     public boolean isExecuted() {
         return mDelegate.isExecuted();
@@ -92,4 +110,29 @@ class FutureCallImpl<T> extends AbsFutureCall<T> {
     public Object clone() {
         return new FutureCallImpl(mDelegate);
     }
-}
\ No newline at end of file
+
+    private static final class OnBodyCallback<T>
+            implements OnCallback<Response<T>>, CallbackDispatch.Liveness {
+
+        private final OnCallback<T> mCallback;
+
+        OnBodyCallback(OnCallback<T> callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return CallbackDispatch.isAlive(mCallback);
+        }
+
+        @Override
+        public void onResponse(int code, String message, Response<T> result) {
+            mCallback.onResponse(code, message, result.body());
+        }
+
+        @Override
+        public void onError() {
+            mCallback.onError();
+        }
+    }
+}
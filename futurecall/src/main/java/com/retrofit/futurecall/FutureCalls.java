@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Combinators over many FutureCall, all calls share one deadline and the caller thread
+ * is woken once, when the combined result is ready.
+ */
+
+
+public final class FutureCalls {
+
+    private static final int MODE_ALL = 0;
+
+    private static final int MODE_ANY = 1;
+
+    private static final int MODE_FIRST_SUCCESSFUL = 2;
+
+    private FutureCalls() {
+    }
+
+    /**
+     * Submit all calls and block until all of them completed or timed out.
+     *
+     * @param timeout shared by all calls, wait forever if not positive.
+     * @return results in order of calls, null item if that call failed or timed out.
+     */
+    @NonNull
+    public static <T> List<T> allOf(@NonNull List<? extends FutureCall<T>> calls,
+            long timeout, TimeUnit unit) throws InterruptedException {
+        final Gather<T> gather = gather(calls, MODE_ALL);
+        gather.await(timeout, unit);
+        final int size = calls.size();
+        final List<T> ret = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ret.add(gather.results.get(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Submit all calls and block until the first one completed, others will be canceled.
+     * All of them are canceled if the caller is interrupted.
+     *
+     * @return result of the first completed call, null if it failed or timed out.
+     */
+    @Nullable
+    public static <T> T anyOf(@NonNull List<? extends FutureCall<T>> calls,
+            long timeout, TimeUnit unit) throws InterruptedException {
+        return winnerOf(calls, MODE_ANY, timeout, unit);
+    }
+
+    /**
+     * Submit all calls, such as same request to different mirrors, and block until the first
+     * success one completed, others will be canceled. All of them are canceled if the caller
+     * is interrupted.
+     *
+     * @return first success data, null if all failed or timed out.
+     */
+    @Nullable
+    public static <T> T firstSuccessful(@NonNull List<? extends FutureCall<T>> calls,
+            long timeout, TimeUnit unit) throws InterruptedException {
+        return winnerOf(calls, MODE_FIRST_SUCCESSFUL, timeout, unit);
+    }
+
+    private static <T> T winnerOf(List<? extends FutureCall<T>> calls, int mode,
+            long timeout, TimeUnit unit) throws InterruptedException {
+        final Gather<T> gather = gather(calls, mode);
+        try {
+            gather.await(timeout, unit);
+        } catch (InterruptedException e) {
+            // no one takes the result any more.
+            cancelOthers(calls, -1);
+            throw e;
+        }
+        final int winner = gather.winner.get();
+        cancelOthers(calls, winner);
+        return winner >= 0 ? gather.results.get(winner) : null;
+    }
+
+    private static void cancelOthers(List<? extends FutureCall<?>> calls, int winner) {
+        for (int i = 0, size = calls.size(); i < size; i++) {
+            if (i != winner) {
+                calls.get(i).cancel();
+            }
+        }
+    }
+
+    private static <T> Gather<T> gather(List<? extends FutureCall<T>> calls, int mode) {
+        if (calls == null) {
+            throw new NullPointerException("calls is null");
+        }
+        final int size = calls.size();
+        final Gather<T> gather = new Gather<>(size, mode);
+        if (size == 0) {
+            gather.isDone = true;
+            return gather;
+        }
+        for (int i = 0; i < size; i++) {
+            FutureCallHelper.whenComplete(calls.get(i), new GatherCallback<>(gather, i));
+        }
+        return gather;
+    }
+
+    private static final class Gather<T> {
+
+        final AtomicReferenceArray<T> results;
+
+        final AtomicInteger remaining;
+
+        final AtomicInteger winner = new AtomicInteger(-1);
+
+        private final int mMode;
+
+        private final Thread mWaiter = Thread.currentThread();
+
+        private volatile boolean isDone;
+
+        Gather(int size, int mode) {
+            results = new AtomicReferenceArray<>(size);
+            remaining = new AtomicInteger(size);
+            mMode = mode;
+        }
+
+        void onComplete(int index, T result, boolean success) {
+            if (mMode == MODE_ALL) {
+                results.set(index, result);
+                if (remaining.decrementAndGet() == 0) {
+                    done();
+                }
+            } else if (mMode == MODE_ANY || success && result != null) {
+                if (winner.compareAndSet(-1, index)) {
+                    results.set(index, result);
+                    done();
+                }
+            } else if (remaining.decrementAndGet() == 0) {
+                done();
+            }
+        }
+
+        private void done() {
+            isDone = true;
+            LockSupport.unpark(mWaiter);
+        }
+
+        /**
+         * @param timeout wait forever if not positive.
+         */
+        void await(long timeout, TimeUnit unit) throws InterruptedException {
+            final boolean timed = timeout > 0;
+            final long deadline = timed ? System.nanoTime() + unit.toNanos(timeout) : 0L;
+            while (!isDone) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (timed) {
+                    final long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0L) {
+                        return;
+                    }
+                    LockSupport.parkNanos(this, remainingNanos);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+    }
+
+    private static final class GatherCallback<T> implements OnCallback<T> {
+
+        private final Gather<T> mGather;
+
+        private final int mIndex;
+
+        GatherCallback(Gather<T> gather, int index) {
+            mGather = gather;
+            mIndex = index;
+        }
+
+        @Override
+        public void onResponse(int code, String message, T result) {
+            mGather.onComplete(mIndex, result, true);
+        }
+
+        @Override
+        public void onError() {
+            mGather.onComplete(mIndex, null, false);
+        }
+    }
+}
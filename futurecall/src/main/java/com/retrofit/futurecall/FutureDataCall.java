@@ -45,7 +45,6 @@ class FutureDataCall<T> extends AbsFutureCall<T> {
     @NonNull
     @Override
     public FutureCall<T> enqueue(final OnCallback<T> callback) {
-        checkIsExecuted(mPackCall);
         if (callback == null) {
             throw new NullPointerException("callback is null");
         }
@@ -53,6 +52,30 @@ class FutureDataCall<T> extends AbsFutureCall<T> {
         return this;
     }
 
+    @NonNull
+    @Override
+    public FutureCall<T> dispatchOn(@NonNull CallbackDispatch dispatch) {
+        mPackCall.dispatchOn(dispatch);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<T> priority(int priority) {
+        mPackCall.priority(priority);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<T> whenComplete(OnCallback<T> callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback is null");
+        }
+        mPackCall.whenComplete(new OnDataCallback<>(callback));
+        return this;
+    }
+
     @Override
     public T get(long timeout, TimeUnit unit, boolean throwIfTimeout)
             throws IOException, InterruptedException, TimeoutException {
@@ -63,6 +86,11 @@ class FutureDataCall<T> extends AbsFutureCall<T> {
         return pack.data();
     }
 
+    @Override
+    FutureResponseCall<?> responseCall() {
+        return mPackCall.responseCall();
+    }
+
     @Override
     public boolean isExecuted() {
         return mPackCall.isExecuted();
@@ -83,7 +111,8 @@ class FutureDataCall<T> extends AbsFutureCall<T> {
         return new FutureDataCall<>((FuturePackableCall<Object>) mPackCall.clone());
     }
 
-    private static final class OnDataCallback<T> implements OnCallback<Packable<T>> {
+    private static final class OnDataCallback<T>
+            implements OnCallback<Packable<T>>, CallbackDispatch.Liveness {
 
         private final OnCallback<T> mCallback;
 
@@ -92,7 +121,17 @@ class FutureDataCall<T> extends AbsFutureCall<T> {
         }
 
         @Override
-        public void onResponse(int code, String message, @NonNull Packable<T> result) {
+        public boolean isAlive() {
+            return CallbackDispatch.isAlive(mCallback);
+        }
+
+        @Override
+        public void onResponse(int code, String message, Packable<T> result) {
+            if (result == null) {
+                // intercepted by a filter, or no body.
+                mCallback.onResponse(code, message, null);
+                return;
+            }
             mCallback.onResponse(result.code(), result.message(), result.data());
         }
 
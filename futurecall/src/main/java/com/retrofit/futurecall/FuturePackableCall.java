@@ -16,10 +16,8 @@ package com.retrofit.futurecall;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.Log;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -35,19 +33,14 @@ class FuturePackableCall<T> extends AbsFutureCall<Packable<T>> {
 
     static final int CODE_INTERCEPT_PACK = 498;
 
-    private static final String TAG = FuturePackableCall.class.getSimpleName();
-
     private final FutureResponseCall<Packable<T>> mResponseCall;
 
     private final Class<? extends Packable> mPackClz;
 
-    private final List<PackableFilter> mFilters;
-
     FuturePackableCall(FutureResponseCall<Packable<T>> responseCall,
-            Class<? extends Packable<T>> packClz, List<PackableFilter> filters) {
+            Class<? extends Packable<T>> packClz) {
         this.mResponseCall = responseCall;
         this.mPackClz = packClz;
-        this.mFilters = filters;
     }
 
     @NonNull
@@ -60,11 +53,34 @@ class FuturePackableCall<T> extends AbsFutureCall<Packable<T>> {
     @NonNull
     @Override
     public FutureCall<Packable<T>> enqueue(final OnCallback<Packable<T>> callback) {
-        checkIsExecuted(mResponseCall);
         if (callback == null) {
             throw new NullPointerException("callback is null");
         }
-        mResponseCall.enqueue(new OnPackCallback<>(callback, mFilters));
+        mResponseCall.enqueue(new OnPackCallback<>(callback));
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<Packable<T>> dispatchOn(@NonNull CallbackDispatch dispatch) {
+        mResponseCall.dispatchOn(dispatch);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<Packable<T>> priority(int priority) {
+        mResponseCall.priority(priority);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<Packable<T>> whenComplete(OnCallback<Packable<T>> callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback is null");
+        }
+        mResponseCall.whenComplete(new OnPackCallback<>(callback));
         return this;
     }
 
@@ -76,9 +92,15 @@ class FuturePackableCall<T> extends AbsFutureCall<Packable<T>> {
         if (response == null || response.code() == FutureResponseCall.CODE_FAIL_REQUEST) {
             return null;
         }
+        // null if intercepted by a filter.
         return response.body();
     }
 
+    @Override
+    FutureResponseCall<?> responseCall() {
+        return mResponseCall;
+    }
+
     @Override
     public boolean isExecuted() {
         return mResponseCall.isExecuted();
@@ -99,31 +121,31 @@ class FuturePackableCall<T> extends AbsFutureCall<Packable<T>> {
     public Object clone() {
         return new FuturePackableCall(
                 (FutureResponseCall<Packable>) mResponseCall.clone(),
-                mPackClz, mFilters);
+                mPackClz);
     }
 
-    private static final class OnPackCallback<R> implements OnCallback<Response<Packable<R>>> {
+    private static final class OnPackCallback<R>
+            implements OnCallback<Response<Packable<R>>>, CallbackDispatch.Liveness {
 
         private final OnCallback<Packable<R>> mCallback;
 
-        private final List<PackableFilter> mFilters;
-
-        OnPackCallback(OnCallback<Packable<R>> callback,
-                List<PackableFilter> filter) {
+        OnPackCallback(OnCallback<Packable<R>> callback) {
             mCallback = callback;
-            mFilters = filter;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return CallbackDispatch.isAlive(mCallback);
         }
 
         @Override
         public void onResponse(int code, String message,
                 @NonNull Response<Packable<R>> result) {
             if (result.isSuccessful()) {
-                final Packable<R> pack = result.body();
-                if (doIntercept(pack)) {
-                    mCallback.onResponse(CODE_INTERCEPT_PACK, "packable intercepted", null);
-                    return;
-                }
-                mCallback.onResponse(result.code(), result.message(), pack);
+                mCallback.onResponse(result.code(), result.message(), result.body());
+            } else if (result.code() == CODE_INTERCEPT_PACK) {
+                // filtered once by FilterCall, before the response is shared.
+                mCallback.onResponse(CODE_INTERCEPT_PACK, "packable intercepted", null);
             } else {
                 mCallback.onError();
             }
@@ -133,22 +155,5 @@ class FuturePackableCall<T> extends AbsFutureCall<Packable<T>> {
         public void onError() {
             mCallback.onError();
         }
-
-        @SuppressWarnings("unchecked")
-        private boolean doIntercept(Packable pack) {
-            if (pack == null) {
-                return false;
-            }
-            PackableFilter[] filters =
-                    mFilters != null ? mFilters.toArray(new PackableFilter[mFilters.size()]) : null;
-            for (int i = 0; filters != null && i < filters.length; i++) {
-                PackableFilter f = filters[i];
-                if (f != null && f.onFilter(pack)) {
-                    Log.d(TAG, "packable onFilter success: " + f);
-                    return true;
-                }
-            }
-            return false;
-        }
     }
 }
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import retrofit2.Response;
+
+/**
+ * Pages through a paginated api, the next page is requested in background while the current
+ * one is consumed, so page boundaries do not stall on a round trip.
+ * <p>
+ * The key of page N+1 is extracted from page N, so pages are prefetched one after another,
+ * at most {@link #prefetch(int)} pages ahead of the consumer and until the buffered items
+ * reach {@link #maxBufferedItems(int)}, a count of items rather than of bytes. {@link #cancel()} cancels outstanding prefetches.
+ * Pages are consumed by one thread at a time.
+ */
+
+
+public final class FuturePager<K, P extends Packable<?>> {
+
+    /**
+     * Create the call of a page.
+     */
+    public interface PageLoader<K, P extends Packable<?>> {
+
+        @NonNull
+        FutureCall<P> load(@NonNull K key);
+    }
+
+    /**
+     * Extract the key of the next page.
+     */
+    public interface KeyExtractor<K, P extends Packable<?>> {
+
+        /**
+         * @param key  key of the loaded page.
+         * @param page the loaded page.
+         * @return key of the next page, null if it is the last page.
+         */
+        @Nullable
+        K nextKey(@NonNull K key, @NonNull P page);
+    }
+
+    private static final int DEFAULT_PREFETCH = 1;
+
+    private final PageLoader<K, P> mLoader;
+
+    private final KeyExtractor<K, P> mExtractor;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    /**
+     * Pages requested but not consumed yet, the first is the next one to consume.
+     */
+    private final ArrayDeque<Page<K, P>> mPages = new ArrayDeque<>();
+
+    /**
+     * Key of the page after the last requested one, null if unknown yet or no more pages.
+     */
+    private K mNextKey;
+
+    private int mBufferedItems;
+
+    private volatile int mPrefetch = DEFAULT_PREFETCH;
+
+    private volatile int mMaxBufferedItems = Integer.MAX_VALUE;
+
+    private volatile boolean isCanceled;
+
+    private FuturePager(K firstKey, PageLoader<K, P> loader, KeyExtractor<K, P> extractor) {
+        mNextKey = firstKey;
+        mLoader = loader;
+        mExtractor = extractor;
+    }
+
+    /**
+     * Nothing is requested until the first {@link #next(long, TimeUnit)}.
+     */
+    @NonNull
+    public static <K, P extends Packable<?>> FuturePager<K, P> create(@NonNull K firstKey,
+            @NonNull PageLoader<K, P> loader, @NonNull KeyExtractor<K, P> extractor) {
+        if (firstKey == null) {
+            throw new NullPointerException("firstKey is null");
+        }
+        if (loader == null) {
+            throw new NullPointerException("loader is null");
+        }
+        if (extractor == null) {
+            throw new NullPointerException("extractor is null");
+        }
+        return new FuturePager<>(firstKey, loader, extractor);
+    }
+
+    /**
+     * @param distance pages requested ahead of the consumer, default 1, 0 to disable.
+     */
+    public FuturePager<K, P> prefetch(int distance) {
+        if (distance < 0) {
+            throw new IllegalArgumentException("distance < 0");
+        }
+        mPrefetch = distance;
+        return this;
+    }
+
+    /**
+     * No more page is prefetched while the loaded but not consumed pages hold this many items,
+     * the items of a {@link IData} Array or Collection are counted, other data counts as one.
+     * Items are counted, not bytes, so pages of large items need a lower cap.
+     */
+    public FuturePager<K, P> maxBufferedItems(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("max <= 0");
+        }
+        mMaxBufferedItems = max;
+        return this;
+    }
+
+    /**
+     * @return false after the last page is consumed, a page is answered without data, or this
+     * pager is canceled.
+     */
+    public boolean hasNext() {
+        mLock.lock();
+        try {
+            return !isCanceled && (!mPages.isEmpty() || mNextKey != null);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * This method is blocked! Until the next page is loaded or timed out, and prefetch the
+     * following page. A failed page, such as on an I/O error or an error code, is requested
+     * again by the next call. A page answered without data, such as one intercepted by a
+     * {@link PackableFilter} or a response without a body, has no next key and ends paging.
+     *
+     * @param timeout wait forever if not positive.
+     * @return the next page, null if failure, timed out or no more pages.
+     */
+    @Nullable
+    public P next(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        Page<K, P> page;
+        Page<K, P> start = null;
+        mLock.lock();
+        try {
+            if (isCanceled) {
+                return null;
+            }
+            page = mPages.peekFirst();
+            if (page == null) {
+                if (mNextKey == null) {
+                    return null;
+                }
+                page = start = newPage(mNextKey);
+                mNextKey = null;
+            }
+        } finally {
+            mLock.unlock();
+        }
+        if (start != null) {
+            start.start();
+        }
+        P result;
+        try {
+            result = page.get(timeout, unit);
+        } catch (TimeoutException e) {
+            return null;
+        }
+        // the completion hook may not have run yet.
+        start = onPageComplete(page, result);
+        mLock.lock();
+        try {
+            if (isCanceled || mPages.peekFirst() != page) {
+                return null;
+            }
+            mPages.pollFirst();
+            if (page.result == null) {
+                if (!page.isEmpty()) {
+                    // nothing is chained after a failed page, request it again next time.
+                    mNextKey = page.key;
+                }
+                return null;
+            }
+            mBufferedItems -= page.items;
+            if (start == null) {
+                start = prefetchIfNeed();
+            }
+        } finally {
+            mLock.unlock();
+        }
+        if (start != null) {
+            start.start();
+        }
+        return result;
+    }
+
+    /**
+     * Stop paging and cancel outstanding prefetches.
+     */
+    public void cancel() {
+        mLock.lock();
+        try {
+            isCanceled = true;
+            mNextKey = null;
+            mBufferedItems = 0;
+            for (Page<K, P> page : mPages) {
+                page.cancel();
+            }
+            mPages.clear();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public boolean isCanceled() {
+        return isCanceled;
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private Page<K, P> newPage(K key) {
+        final Page<K, P> page = new Page<>(this, key, mLoader.load(key));
+        mPages.addLast(page);
+        return page;
+    }
+
+    /**
+     * Must hold the lock.
+     *
+     * @return page to start after unlock, or null.
+     */
+    private Page<K, P> prefetchIfNeed() {
+        if (isCanceled || mNextKey == null
+                || mPages.size() >= mPrefetch || mBufferedItems >= mMaxBufferedItems) {
+            return null;
+        }
+        final Page<K, P> page = newPage(mNextKey);
+        mNextKey = null;
+        return page;
+    }
+
+    /**
+     * @return page to start after unlock, or null.
+     */
+    private Page<K, P> onPageComplete(Page<K, P> page, P result) {
+        mLock.lock();
+        try {
+            if (page.isDone || isCanceled) {
+                return null;
+            }
+            page.isDone = true;
+            if (result == null) {
+                return null;
+            }
+            page.result = result;
+            page.items = itemsOf(result.data());
+            mBufferedItems += page.items;
+            if (mPages.peekLast() != page) {
+                return null;
+            }
+            mNextKey = mExtractor.nextKey(page.key, result);
+            return prefetchIfNeed();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private static int itemsOf(Object data) {
+        if (data == null) {
+            return 0;
+        }
+        if (data instanceof Collection) {
+            return ((Collection<?>) data).size();
+        }
+        if (data.getClass().isArray()) {
+            return Array.getLength(data);
+        }
+        return 1;
+    }
+
+    private static final class Page<K, P extends Packable<?>> implements OnCallback<P> {
+
+        final K key;
+
+        private final FuturePager<K, P> mPager;
+
+        private final FutureCall<P> mCall;
+
+        /**
+         * Guarded by the pager lock.
+         */
+        boolean isDone;
+
+        P result;
+
+        int items;
+
+        Page(FuturePager<K, P> pager, K key, FutureCall<P> call) {
+            this.mPager = pager;
+            this.key = key;
+            this.mCall = call;
+        }
+
+        /**
+         * Submit out of the pager lock, the hook may run inline if the call completes fast.
+         */
+        void start() {
+            if (mPager.isCanceled) {
+                mCall.cancel();
+                return;
+            }
+            FutureCallHelper.whenComplete(mCall, this);
+        }
+
+        P get(long timeout, TimeUnit unit)
+                throws IOException, InterruptedException, TimeoutException {
+            return mCall.get(timeout, unit, true);
+        }
+
+        void cancel() {
+            mCall.cancel();
+        }
+
+        /**
+         * @return true if the completed call has a response but no page, as if intercepted by
+         * a filter or without a body, false if it failed.
+         */
+        boolean isEmpty() {
+            if (!(mCall instanceof AbsFutureCall)) {
+                return false;
+            }
+            final Response<?> response = ((AbsFutureCall<?>) mCall).responseCall().response();
+            return response != null && (response.isSuccessful()
+                    || response.code() == FuturePackableCall.CODE_INTERCEPT_PACK);
+        }
+
+        @Override
+        public void onResponse(int code, String message, P result) {
+            complete(result);
+        }
+
+        @Override
+        public void onError() {
+            complete(null);
+        }
+
+        private void complete(P result) {
+            final Page<K, P> start = mPager.onPageComplete(this, result);
+            if (start != null) {
+                start.start();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reactive Streams Publisher of a FutureCall, emits at most one value then completes.
+ * The call is submitted on the first request(n), the value is emitted on the thread that
+ * completes the call, such as the OkHttp callback thread, with no executor hop.
+ * Subscribers of one publisher share the call. Canceling a subscription only detaches it,
+ * the call is canceled when the last subscriber waiting for it cancels, later subscribers
+ * then get an error.
+ * <p>
+ * Needs org.reactivestreams:reactive-streams at runtime.
+ */
+
+
+public final class FuturePublisher<T> implements Publisher<T> {
+
+    private final FutureCall<T> mCall;
+
+    /**
+     * Subscriptions that requested and are not done yet.
+     */
+    private final AtomicInteger mWaiting = new AtomicInteger();
+
+    private FuturePublisher(FutureCall<T> call) {
+        this.mCall = call;
+    }
+
+    @NonNull
+    public static <T> Publisher<T> from(@NonNull FutureCall<T> call) {
+        if (call == null) {
+            throw new NullPointerException("call is null");
+        }
+        return new FuturePublisher<>(call);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber is null");
+        }
+        subscriber.onSubscribe(new CallSubscription<>(mCall, mWaiting, subscriber));
+    }
+
+    private static final class CallSubscription<T> implements Subscription, OnCallback<T> {
+
+        private static final int STATE_IDLE = 0;
+
+        private static final int STATE_REQUESTED = 1;
+
+        private static final int STATE_DONE = 2;
+
+        private final FutureCall<T> mCall;
+
+        private final AtomicInteger mWaiting;
+
+        private final Subscriber<? super T> mSubscriber;
+
+        private final AtomicInteger mState = new AtomicInteger(STATE_IDLE);
+
+        CallSubscription(FutureCall<T> call, AtomicInteger waiting,
+                Subscriber<? super T> subscriber) {
+            mCall = call;
+            mWaiting = waiting;
+            mSubscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (mState.getAndSet(STATE_DONE) != STATE_DONE) {
+                    mSubscriber.onError(new IllegalArgumentException(
+                            "request must be positive, but was " + n));
+                }
+                return;
+            }
+            if (mState.compareAndSet(STATE_IDLE, STATE_REQUESTED)) {
+                mWaiting.incrementAndGet();
+                FutureCallHelper.whenComplete(mCall, this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            // others may still wait for the shared call.
+            if (mState.getAndSet(STATE_DONE) == STATE_REQUESTED
+                    && mWaiting.decrementAndGet() == 0) {
+                mCall.cancel();
+            }
+        }
+
+        @Override
+        public void onResponse(int code, String message, T result) {
+            if (mState.compareAndSet(STATE_REQUESTED, STATE_DONE)) {
+                mWaiting.decrementAndGet();
+                if (result != null) {
+                    mSubscriber.onNext(result);
+                }
+                mSubscriber.onComplete();
+            }
+        }
+
+        @Override
+        public void onError() {
+            if (mState.compareAndSet(STATE_REQUESTED, STATE_DONE)) {
+                mWaiting.decrementAndGet();
+                mSubscriber.onError(new IOException("request failure"));
+            }
+        }
+    }
+}
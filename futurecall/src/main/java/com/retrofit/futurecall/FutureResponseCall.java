@@ -19,9 +19,12 @@ import android.support.annotation.Nullable;
 import android.util.Log;
 
 import java.io.IOException;
-import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import okhttp3.MediaType;
 import okhttp3.ResponseBody;
@@ -42,115 +45,579 @@ class FutureResponseCall<R> extends AbsFutureCall<Response<R>> {
 
     private static final String TAG = FutureResponseCall.class.getSimpleName();
 
-    private final Executor mCallbackExecutor;
+    /**
+     * state transitions:
+     * PENDING -> COMPLETING -> COMPLETED
+     * PENDING -> COMPLETING -> FAILED
+     * PENDING -> COMPLETING -> CANCELLED
+     */
+    private static final int STATE_PENDING = 0;
+
+    private static final int STATE_COMPLETING = 1;
+
+    private static final int STATE_COMPLETED = 2;
+
+    private static final int STATE_FAILED = 3;
+
+    private static final int STATE_CANCELLED = 4;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<FutureResponseCall> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(FutureResponseCall.class, "mState");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<FutureResponseCall, WaitNode> WAITERS =
+            AtomicReferenceFieldUpdater.newUpdater(FutureResponseCall.class, WaitNode.class,
+                    "mWaiters");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<FutureResponseCall, ListenerNode> LISTENERS =
+            AtomicReferenceFieldUpdater.newUpdater(FutureResponseCall.class, ListenerNode.class,
+                    "mListeners");
+
+    /**
+     * Marks the listener stack as drained, listeners added later are invoked immediately.
+     */
+    private static final ListenerNode LISTENERS_CLOSED = new ListenerNode(null, null);
+
+    private final CallContext mContext;
 
     private final Call<R> mCall;
 
-    private final Object mLock = new Object();
+    /**
+     * Guards the single network execution shared by every consumer.
+     */
+    private final AtomicBoolean mStarted = new AtomicBoolean();
+
+    /**
+     * True if completed by a cache hit, consumers are invoked without executor hop.
+     */
+    private volatile boolean isFromCache;
+
+    /**
+     * Dispatch of callbacks enqueued from now on, null for the one of the adapter.
+     */
+    private volatile CallbackDispatch mDispatch;
+
+    private volatile SingleFlight.Flight<R> mFlight;
+
+    /**
+     * Registry this call is submitted ahead of time to, see {@link #prefetch(Prefetcher)}.
+     */
+    private volatile Prefetcher mPrefetcher;
+
+    private volatile Callback<R> mFlightCallback;
+
+    /**
+     * The call that carries the request when it is shared by single flight or a prefetch,
+     * its queued slot is the one to promote.
+     */
+    private volatile Call<?> mCarrier;
+
+    private volatile int mState = STATE_PENDING;
 
     private volatile Response<?> mResult;
 
-    FutureResponseCall(Call<R> call, Executor callbackExecutor) {
+    /**
+     * Treiber stack of threads blocked in get().
+     */
+    private volatile WaitNode mWaiters;
+
+    /**
+     * Treiber stack of completion listeners, see {@link #whenComplete(OnCallback)}.
+     */
+    private volatile ListenerNode mListeners;
+
+    FutureResponseCall(Call<R> call, CallContext context) {
         if (call == null) {
             throw new NullPointerException("call is null");
         }
         this.mCall = call;
-        this.mCallbackExecutor = callbackExecutor;
+        this.mContext = context;
     }
 
-    private void submitIfNeed() {
-        if (mCall.isExecuted()) {
-            return;
+    @NonNull
+    @Override
+    public FutureCall<Response<R>> submit() {
+        if (mState == STATE_PENDING && mStarted.compareAndSet(false, true)) {
+            final CallMetricsListener metrics = mContext.metrics;
+            if (metrics != null) {
+                metrics.onSubmit(mContext.endpoint);
+            }
+            execute(mCall, new CallCallback<R>());
         }
+        return this;
+    }
+
+    /**
+     * Submit ahead of time, later identical calls attach to this one by the prefetcher.
+     */
+    void prefetch(Prefetcher prefetcher) {
+        mPrefetcher = prefetcher;
         submit();
     }
 
-    @NonNull
+    /**
+     * @return true if the body is a raw ResponseBody, read once by one caller.
+     */
+    boolean isRawBody() {
+        return mContext.isRawBody;
+    }
+
     @Override
-    public FutureCall<Response<R>> submit() {
-        final Call<R> call = mCall.isExecuted() ? mCall.clone() : mCall;
-        //noinspection unchecked
-        call.enqueue(new CallCallback(null));
+    FutureResponseCall<?> responseCall() {
         return this;
     }
 
+    /**
+     * Any number of callbacks can be enqueued, before or after completion,
+     * they share one network execution.
+     */
     @NonNull
     @Override
     public FutureCall<Response<R>> enqueue(OnCallback<Response<R>> callback) {
-        checkIsExecuted(mCall);
         if (callback == null) {
             throw new NullPointerException("callback is null");
         }
-        mCall.enqueue(new CallCallback<>(callback));
+        addListener(dispatching(callback));
+        submit();
         return this;
     }
 
+    /**
+     * Wrap a callback to be posted by the dispatch of this call, as enqueued callbacks are.
+     */
+    <V> OnCallback<V> dispatching(OnCallback<V> callback) {
+        final CallbackDispatch dispatch = mDispatch;
+        return new DispatchCallback<>(callback, dispatch != null ? dispatch : mContext.dispatch);
+    }
+
+    private void execute(final Call<R> call, final CallCallback<R> callback) {
+        final CallContext ctx = mContext;
+        final Prefetcher prefetcher = mPrefetcher;
+        if ((ctx.cache == null && ctx.diskCache == null && ctx.singleFlight == null
+                && ctx.prefetcher == null && prefetcher == null)
+                || !RequestKey.isSafe(call.request())) {
+            call.enqueue(callback);
+            return;
+        }
+        final String key = RequestKey.of(call.request(), ctx.responseType);
+        if (prefetcher == null && ctx.prefetcher != null) {
+            final Call<?> carrier = ctx.prefetcher.attach(key, callback);
+            if (carrier != null) {
+                mCarrier = carrier;
+                return;
+            }
+        }
+        if (ctx.cache != null) {
+            final PackableCache.Entry hit = ctx.cache.get(key);
+            if (hit != null) {
+                if (hit.isStale()) {
+                    ctx.cache.revalidate(key, call, storeOnResponse(key, null));
+                }
+                //noinspection unchecked
+                callback.onCached((Response<R>) hit.response);
+                return;
+            }
+        }
+        if (ctx.diskCache != null) {
+            // file io must not block the caller, which may be the main thread.
+            FutureCallScheduler.io(new Runnable() {
+                @Override
+                public void run() {
+                    // last known good result, always refreshed.
+                    final Response<?> hit = ctx.diskCache.load(key);
+                    if (hit != null) {
+                        ctx.diskCache.revalidate(key, call, storeOnResponse(key, null));
+                        // off the caller thread, callbacks are dispatched as for the network.
+                        //noinspection unchecked
+                        callback.onResponse(call, (Response<R>) hit);
+                        return;
+                    }
+                    fetch(call, callback, key, prefetcher);
+                }
+            });
+            return;
+        }
+        fetch(call, callback, key, prefetcher);
+    }
+
+    /**
+     * Execute the call on cache miss, shared by single flight or a prefetch if any.
+     */
+    private void fetch(Call<R> call, CallCallback<R> callback, String key,
+            @Nullable Prefetcher prefetcher) {
+        if (mState == STATE_CANCELLED) {
+            // canceled during the disk lookup.
+            return;
+        }
+        final CallContext ctx = mContext;
+        final Callback<R> cb = storeOnResponse(key, callback);
+        if (prefetcher != null) {
+            mCarrier = prefetcher.execute(key, call, cb);
+        } else if (ctx.singleFlight != null) {
+            mFlightCallback = cb;
+            final SingleFlight.Flight<R> flight = ctx.singleFlight.execute(key, call, cb);
+            mCarrier = flight.call();
+            mFlight = flight;
+            if (mState == STATE_CANCELLED) {
+                // canceled while joining, cancel() could not leave the flight yet.
+                flight.leave(cb);
+            }
+        } else {
+            call.enqueue(cb);
+        }
+    }
+
+    private Callback<R> storeOnResponse(String key, @Nullable Callback<R> callback) {
+        final CallContext ctx = mContext;
+        Callback<R> cb = callback;
+        if (ctx.diskCache != null) {
+            cb = ctx.diskCache.storeOnResponse(key, cb);
+        }
+        if (ctx.cache != null) {
+            cb = ctx.cache.storeOnResponse(key, cb);
+        }
+        return cb;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<Response<R>> dispatchOn(@NonNull CallbackDispatch dispatch) {
+        if (dispatch == null) {
+            throw new NullPointerException("dispatch is null");
+        }
+        mDispatch = dispatch;
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<Response<R>> priority(int priority) {
+        if (priority < Priority.INTERACTIVE || priority > Priority.BACKGROUND) {
+            throw new IllegalArgumentException("unknown priority: " + priority);
+        }
+        prioritize(priority);
+        return this;
+    }
+
+    private void prioritize(int priority) {
+        final Call<?> carrier = mCarrier;
+        Call<?> call = carrier != null ? carrier : mCall;
+        // a batch call sits outside its queued slot.
+        while (!(call instanceof PriorityCall) && call instanceof ForwardingCall) {
+            call = ((ForwardingCall<?>) call).delegate();
+        }
+        if (call instanceof PriorityCall) {
+            ((PriorityCall<?>) call).priority(priority);
+        }
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<Response<R>> whenComplete(OnCallback<Response<R>> callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback is null");
+        }
+        addListener(callback);
+        submit();
+        return this;
+    }
+
+    private void addListener(OnCallback<Response<R>> callback) {
+        ListenerNode node = null;
+        for (; ; ) {
+            final ListenerNode head = mListeners;
+            if (head == LISTENERS_CLOSED) {
+                notifyListener(callback);
+                break;
+            }
+            if (node == null) {
+                node = new ListenerNode(callback, head);
+            } else {
+                node.next = head;
+            }
+            if (LISTENERS.compareAndSet(this, head, node)) {
+                break;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     @Override
     @Nullable
     public Response<R> get(long timeout, TimeUnit unit, boolean throwIfTimeout)
             throws IOException, InterruptedException, TimeoutException {
-        if (mResult != null) {
+        if (mState > STATE_COMPLETING) {
             return (Response<R>) mResult;
         }
-        submitIfNeed();
-        final long waitTime = timeout > 0 ? unit.toMillis(timeout) : -1;
-        final Response<R> ret;
-        boolean isTimeOut = false;
-        try {
-            synchronized (mLock) {
-                while (unInterrupted() && mResult == null && !isTimeOut) {
-                    if (waitTime < 0) {
-                        mLock.wait();
-                    } else {
-                        mLock.wait(waitTime);
-                        isTimeOut = true;
+        final boolean timed = timeout > 0;
+        final long nanos = timed ? unit.toNanos(timeout) : 0L;
+        if (timed && mCall instanceof ForwardingCall) {
+            // retries and other attempts must not outlive this caller.
+            ((ForwardingCall<R>) mCall).deadline(System.nanoTime() + nanos);
+        }
+        submit();
+        // the caller is waiting, do not leave it queued behind background calls.
+        prioritize(Priority.INTERACTIVE);
+        final CallMetricsListener metrics = mContext.metrics;
+        final long start = metrics != null ? System.nanoTime() : 0L;
+        final boolean isDone = awaitDone(timed, nanos);
+        if (metrics != null) {
+            metrics.onBlocked(mContext.endpoint, System.nanoTime() - start);
+        }
+        if (throwIfTimeout && !isDone) {
+            throw new TimeoutException(String.format("timeout: %s, %s", timeout, unit));
+        }
+        return isDone ? (Response<R>) mResult : null;
+    }
+
+    /**
+     * Park current thread until completed or the deadline passed, no monitor is held while
+     * parking. Spurious wakeups park again for the remaining time.
+     *
+     * @param timed true if wait with a deadline, otherwise wait forever.
+     * @param nanos nanos to wait, if timed.
+     * @return true if completed.
+     */
+    private boolean awaitDone(boolean timed, long nanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        WaitNode q = null;
+        boolean queued = false;
+        for (; ; ) {
+            final int s = mState;
+            if (s > STATE_COMPLETING) {
+                if (q != null) {
+                    q.thread = null;
+                }
+                return true;
+            } else if (s == STATE_COMPLETING) {
+                // result is being published, will not take long.
+                Thread.yield();
+            } else if (Thread.interrupted()) {
+                removeWaiter(q);
+                throw new InterruptedException();
+            } else if (q == null) {
+                q = new WaitNode();
+            } else if (!queued) {
+                q.next = mWaiters;
+                queued = WAITERS.compareAndSet(this, q.next, q);
+            } else if (timed) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    removeWaiter(q);
+                    return mState > STATE_COMPLETING;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Unlink timed out or interrupted wait node, so the stack does not accumulate garbage.
+     */
+    private void removeWaiter(WaitNode node) {
+        if (node == null) {
+            return;
+        }
+        node.thread = null;
+        retry:
+        for (; ; ) {
+            for (WaitNode pred = null, q = mWaiters, s; q != null; q = s) {
+                s = q.next;
+                if (q.thread != null) {
+                    pred = q;
+                } else if (pred != null) {
+                    pred.next = s;
+                    if (pred.thread == null) {
+                        continue retry;
                     }
+                } else if (!WAITERS.compareAndSet(this, q, s)) {
+                    continue retry;
                 }
-                ret = (Response<R>) mResult;
-                mLock.notifyAll();
             }
-        } catch (InterruptedException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new IOException(e);
+            break;
         }
-        if (throwIfTimeout && isTimeOut && ret == null) {
-            throw new TimeoutException(String.format("timeout: %s, %s", timeout, unit));
+    }
+
+    /**
+     * Publish result once, the first completion wins.
+     *
+     * @return true if this invocation completed the call.
+     */
+    private boolean complete(int state, Response<?> result) {
+        if (!STATE.compareAndSet(this, STATE_PENDING, STATE_COMPLETING)) {
+            return false;
         }
-        return ret;
+        mResult = result;
+        mState = state;
+        finishCompletion();
+        notifyListeners();
+        return true;
     }
 
-    private boolean unInterrupted() {
-        return !Thread.currentThread().isInterrupted();
+    /**
+     * Unpark every waiter exactly once.
+     */
+    private void finishCompletion() {
+        for (WaitNode q; (q = mWaiters) != null; ) {
+            if (WAITERS.compareAndSet(this, q, null)) {
+                for (; ; ) {
+                    final Thread t = q.thread;
+                    if (t != null) {
+                        q.thread = null;
+                        LockSupport.unpark(t);
+                    }
+                    final WaitNode next = q.next;
+                    if (next == null) {
+                        break;
+                    }
+                    q.next = null;
+                    q = next;
+                }
+                break;
+            }
+        }
     }
 
     @Override
     public boolean isExecuted() {
-        return mCall.isExecuted();
+        return mStarted.get();
     }
 
     @Override
     public void cancel() {
-        mCall.cancel();
+        final SingleFlight.Flight<R> flight = mFlight;
+        if (flight != null) {
+            // other participants may still wait for the shared call.
+            flight.leave(mFlightCallback);
+        } else if (mFlightCallback == null) {
+            mCall.cancel();
+        }
+        // else joining a flight, execute leaves it once the flight is published.
+        complete(STATE_CANCELLED, Response.error(CODE_FAIL_REQUEST,
+                new NoContentResponseBody(new IOException("Canceled"))));
     }
 
     @Override
     public boolean isCanceled() {
-        return mCall.isCanceled();
+        return mState == STATE_CANCELLED || mCall.isCanceled();
+    }
+
+    /**
+     * @return response of a completed call, null if the call is not completed, failed or
+     * canceled.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    Response<R> response() {
+        return mState == STATE_COMPLETED ? (Response<R>) mResult : null;
+    }
+
+    /**
+     * @return cause of a failed call, such as a {@link CallRejectedException}, null if the
+     * call did not fail.
+     */
+    @Nullable
+    Throwable failure() {
+        if (mState != STATE_FAILED) {
+            return null;
+        }
+        final ResponseBody body = mResult.errorBody();
+        return body instanceof NoContentResponseBody ? ((NoContentResponseBody) body).cause : null;
+    }
+
+    /**
+     * Drain the listener stack in the order listeners were added, on the completing thread.
+     */
+    @SuppressWarnings("unchecked")
+    private void notifyListeners() {
+        ListenerNode head = LISTENERS.getAndSet(this, LISTENERS_CLOSED);
+        ListenerNode reversed = null;
+        while (head != null) {
+            final ListenerNode next = head.next;
+            head.next = reversed;
+            reversed = head;
+            head = next;
+        }
+        for (ListenerNode q = reversed; q != null; q = q.next) {
+            notifyListener(q.listener);
+        }
+    }
+
+    /**
+     * A listener that throws from onResponse gets onError, so bridges and combinators
+     * built on it still complete.
+     */
+    @SuppressWarnings("unchecked")
+    private void notifyListener(OnCallback<?> listener) {
+        final Response<?> result = mResult;
+        if (mState != STATE_COMPLETED) {
+            notifyError(listener);
+            return;
+        }
+        try {
+            // listeners of this call take its response type.
+            ((OnCallback<Response<?>>) listener).onResponse(result.code(), result.message(),
+                    result);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "listener failure: " + e.toString());
+            notifyError(listener);
+        }
+    }
+
+    private static void notifyError(OnCallback<?> listener) {
+        try {
+            listener.onError();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "listener failure: " + e.toString());
+        }
     }
 
     @SuppressWarnings("MethodDoesntCallSuperMethod")
     @Override
     public Object clone() {
-        return new FutureResponseCall<>(mCall.clone(), mCallbackExecutor);
+        return new FutureResponseCall<>(mCall.clone(), mContext);
     }
 
-    private void execInCallbackExecutor(Runnable task) {
-        final Executor e = mCallbackExecutor;
-        if (e != null) {
-            e.execute(task);
+    private void dispatch(CallbackDispatch dispatch, final Runnable task) {
+        final CallMetricsListener metrics = mContext.metrics;
+        if (metrics != null && !dispatch.isImmediate()) {
+            final long posted = System.nanoTime();
+            dispatch.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    metrics.onDispatch(mContext.endpoint, System.nanoTime() - posted);
+                    task.run();
+                }
+            });
         } else {
-            task.run();
+            dispatch.dispatch(task);
+        }
+    }
+
+    static final class WaitNode {
+
+        volatile Thread thread;
+
+        volatile WaitNode next;
+
+        WaitNode() {
+            thread = Thread.currentThread();
+        }
+    }
+
+    static final class ListenerNode {
+
+        final OnCallback<?> listener;
+
+        ListenerNode next;
+
+        ListenerNode(OnCallback<?> listener, ListenerNode next) {
+            this.listener = listener;
+            this.next = next;
         }
     }
 
@@ -199,45 +666,77 @@ class FutureResponseCall<R> extends AbsFutureCall<Response<R>> {
 
     private class CallCallback<R> implements Callback<R> {
 
-        private final OnCallback<Response<R>> nOnCallback;
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            complete(STATE_COMPLETED, response);
+        }
+
+        /**
+         * Memory cache hit on the caller thread, callbacks run on it without a dispatch.
+         */
+        void onCached(Response<R> response) {
+            isFromCache = true;
+            complete(STATE_COMPLETED, response);
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            Log.w(TAG, "response onFailure: " + t.toString());
+            // a local rejection keeps its code, so it can be told from a network failure.
+            final int code = t instanceof CallRejectedException
+                    ? ((CallRejectedException) t).code() : CODE_FAIL_REQUEST;
+            complete(STATE_FAILED, Response.error(code, new NoContentResponseBody(t)));
+        }
+    }
+
+    /**
+     * Post the completion by the dispatch, unless completed by a cache hit
+     * or the callback target is gone.
+     */
+    private final class DispatchCallback<V> implements OnCallback<V>, CallbackDispatch.Liveness {
+
+        private final OnCallback<V> mCallback;
+
+        private final CallbackDispatch mCallbackDispatch;
 
-        CallCallback(OnCallback<Response<R>> onCallback) {
-            this.nOnCallback = onCallback;
+        DispatchCallback(OnCallback<V> callback, CallbackDispatch dispatch) {
+            mCallback = callback;
+            mCallbackDispatch = dispatch;
         }
 
         @Override
-        public void onResponse(Call<R> call, final Response<R> response) {
-            synchronized (mLock) {
-                mResult = response;
-                mLock.notifyAll();
+        public boolean isAlive() {
+            return CallbackDispatch.isAlive(mCallback);
+        }
+
+        @Override
+        public void onResponse(final int code, final String message, final V result) {
+            if (isFromCache) {
+                mCallback.onResponse(code, message, result);
+                return;
             }
-            if (nOnCallback != null) {
-                execInCallbackExecutor(new Runnable() {
-                    @Override
-                    public void run() {
-                        nOnCallback.onResponse(response.code(),
-                                response.message(),
-                                response);
-                    }
-                });
+            if (!CallbackDispatch.isAlive(mCallback)) {
+                return;
             }
+            dispatch(mCallbackDispatch, new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onResponse(code, message, result);
+                }
+            });
         }
 
         @Override
-        public void onFailure(Call<R> call, Throwable t) {
-            Log.w(TAG, "response onFailure: " + t.toString());
-            synchronized (mLock) {
-                mResult = Response.error(CODE_FAIL_REQUEST, new NoContentResponseBody(t));
-                mLock.notifyAll();
-            }
-            if (nOnCallback != null) {
-                execInCallbackExecutor(new Runnable() {
-                    @Override
-                    public void run() {
-                        nOnCallback.onError();
-                    }
-                });
+        public void onError() {
+            if (!CallbackDispatch.isAlive(mCallback)) {
+                return;
             }
+            dispatch(mCallbackDispatch, new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onError();
+                }
+            });
         }
     }
 }
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * FutureCall of a {@link DataStream}, the body is decoded once on the completing thread and
+ * the stream is shared by every consumer, so only one of them should iterate it. A body no
+ * consumer took is closed, once the call is canceled or the last consumer is gone.
+ */
+
+
+class FutureStreamCall<T> extends AbsFutureCall<DataStream<T>> {
+
+    private static final String TAG = FutureStreamCall.class.getSimpleName();
+
+    private static final int STREAM_OPEN = 0;
+
+    private static final int STREAM_TAKEN = 1;
+
+    private static final int STREAM_CLOSED = 2;
+
+    private final FutureResponseCall<ResponseBody> mResponseCall;
+
+    private final DataStreamDecoder mDecoder;
+
+    private final Type mElementType;
+
+    private final ReentrantLock mDecodeLock = new ReentrantLock();
+
+    private volatile DataStream<T> mStream;
+
+    /**
+     * Consumers that may still take the stream.
+     */
+    private final AtomicInteger mReaders = new AtomicInteger();
+
+    private final AtomicInteger mStreamState = new AtomicInteger(STREAM_OPEN);
+
+    FutureStreamCall(FutureResponseCall<ResponseBody> responseCall, DataStreamDecoder decoder,
+            Type elementType) {
+        this.mResponseCall = responseCall;
+        this.mDecoder = decoder;
+        this.mElementType = elementType;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<DataStream<T>> submit() {
+        mResponseCall.submit();
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<DataStream<T>> enqueue(OnCallback<DataStream<T>> callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback is null");
+        }
+        mReaders.incrementAndGet();
+        // decoded on the completing thread, only the decoded stream is dispatched.
+        mResponseCall.whenComplete(new OnStreamCallback(mResponseCall.dispatching(callback)));
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<DataStream<T>> dispatchOn(@NonNull CallbackDispatch dispatch) {
+        mResponseCall.dispatchOn(dispatch);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<DataStream<T>> priority(int priority) {
+        mResponseCall.priority(priority);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public FutureCall<DataStream<T>> whenComplete(OnCallback<DataStream<T>> callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback is null");
+        }
+        mReaders.incrementAndGet();
+        mResponseCall.whenComplete(new OnStreamCallback(callback));
+        return this;
+    }
+
+    @Nullable
+    @Override
+    public DataStream<T> get(long timeout, TimeUnit unit, boolean throwIfTimeout)
+            throws IOException, InterruptedException, TimeoutException {
+        mReaders.incrementAndGet();
+        Response<ResponseBody> response = null;
+        try {
+            response = mResponseCall.get(timeout, unit, throwIfTimeout);
+            return response != null ? take(response) : null;
+        } finally {
+            if (response == null) {
+                // timed out, the body may still arrive with no one to read it.
+                if (mReaders.decrementAndGet() == 0) {
+                    mResponseCall.whenComplete(new ReleaseCallback(false));
+                }
+            } else {
+                leave(response);
+            }
+        }
+    }
+
+    /**
+     * Hand the stream to a consumer, who closes it from now on.
+     *
+     * @return null if the response failed, or the body was released unread.
+     */
+    private DataStream<T> take(Response<ResponseBody> response) throws IOException {
+        final DataStream<T> stream = decodeOnce(response);
+        if (stream == null) {
+            return null;
+        }
+        for (; ; ) {
+            final int state = mStreamState.get();
+            if (state == STREAM_TAKEN) {
+                return stream;
+            }
+            if (state == STREAM_CLOSED) {
+                return null;
+            }
+            if (mStreamState.compareAndSet(STREAM_OPEN, STREAM_TAKEN)) {
+                return stream;
+            }
+        }
+    }
+
+    /**
+     * @return null if the response failed, or the body was released unread.
+     */
+    private DataStream<T> decodeOnce(Response<ResponseBody> response) throws IOException {
+        DataStream<T> stream = mStream;
+        if (stream != null) {
+            return stream;
+        }
+        final ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            return null;
+        }
+        mDecodeLock.lock();
+        try {
+            stream = mStream;
+            if (stream == null && mStreamState.get() != STREAM_CLOSED) {
+                stream = mDecoder.decode(body, mElementType);
+                mStream = stream;
+            }
+            return stream;
+        } finally {
+            mDecodeLock.unlock();
+        }
+    }
+
+    private void leave(Response<ResponseBody> response) {
+        if (mReaders.decrementAndGet() == 0) {
+            releaseUnread(response);
+        }
+    }
+
+    /**
+     * Close the body unless a consumer took the stream, the connection goes back to the pool.
+     */
+    private void releaseUnread(Response<ResponseBody> response) {
+        final ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null
+                || !mStreamState.compareAndSet(STREAM_OPEN, STREAM_CLOSED)) {
+            return;
+        }
+        mDecodeLock.lock();
+        try {
+            final DataStream<T> stream = mStream;
+            if (stream != null) {
+                stream.close();
+            } else {
+                body.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "close stream failure: " + e.toString());
+        } finally {
+            mDecodeLock.unlock();
+        }
+    }
+
+    @Override
+    FutureResponseCall<?> responseCall() {
+        return mResponseCall;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return mResponseCall.isExecuted();
+    }
+
+    @Override
+    public void cancel() {
+        mResponseCall.cancel();
+        // completed before, a body no consumer took yet is not wanted any more.
+        mResponseCall.whenComplete(new ReleaseCallback(true));
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return mResponseCall.isCanceled();
+    }
+
+    @SuppressWarnings({"MethodDoesntCallSuperMethod", "unchecked"})
+    @Override
+    public Object clone() {
+        return new FutureStreamCall<>(
+                (FutureResponseCall<ResponseBody>) mResponseCall.clone(), mDecoder, mElementType);
+    }
+
+    private final class OnStreamCallback
+            implements OnCallback<Response<ResponseBody>>, CallbackDispatch.Liveness {
+
+        private final OnCallback<DataStream<T>> mCallback;
+
+        OnStreamCallback(OnCallback<DataStream<T>> callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return CallbackDispatch.isAlive(mCallback);
+        }
+
+        @Override
+        public void onResponse(int code, String message, Response<ResponseBody> result) {
+            if (!isAlive()) {
+                // no reader any more.
+                leave(result);
+                return;
+            }
+            DataStream<T> stream = null;
+            try {
+                stream = take(result);
+            } catch (IOException e) {
+                Log.w(TAG, "decode stream failure: " + e.toString());
+            } finally {
+                leave(result);
+            }
+            if (stream == null) {
+                mCallback.onError();
+                return;
+            }
+            mCallback.onResponse(stream.code(), stream.message(), stream);
+        }
+
+        @Override
+        public void onError() {
+            mReaders.decrementAndGet();
+            mCallback.onError();
+        }
+    }
+
+    /**
+     * Release the body at completion, if no consumer is left or the call is canceled.
+     */
+    private final class ReleaseCallback implements OnCallback<Response<ResponseBody>> {
+
+        private final boolean isCanceled;
+
+        ReleaseCallback(boolean canceled) {
+            isCanceled = canceled;
+        }
+
+        @Override
+        public void onResponse(int code, String message, Response<ResponseBody> result) {
+            if (isCanceled || mReaders.get() == 0) {
+                releaseUnread(result);
+            }
+        }
+
+        @Override
+        public void onError() {
+        }
+    }
+}
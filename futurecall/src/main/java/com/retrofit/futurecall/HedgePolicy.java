@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedged requests: if an idempotent request has not completed within the delay, such as the
+ * observed p95 latency, a second identical request is fired, the first response wins and the
+ * other is canceled. Hedges are bounded by a budget in percent of requests.
+ */
+
+
+public final class HedgePolicy {
+
+    /**
+     * Network samples of an endpoint before its percentile replaces the fallback delay.
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    private final long mDelayMillis;
+
+    private final CallMetrics mMetrics;
+
+    private final double mPercentile;
+
+    private int mBudgetPercent = 5;
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+
+    private final AtomicLong mHedgeCount = new AtomicLong();
+
+    private final AtomicLong mHedgeWinCount = new AtomicLong();
+
+    private HedgePolicy(long delayMillis, @Nullable CallMetrics metrics, double percentile) {
+        this.mDelayMillis = delayMillis;
+        this.mMetrics = metrics;
+        this.mPercentile = percentile;
+    }
+
+    /**
+     * Hedge after a fixed delay.
+     */
+    @NonNull
+    public static HedgePolicy create(long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        return new HedgePolicy(unit.toMillis(delay), null, 0d);
+    }
+
+    /**
+     * Hedge after the observed percentile of network latency of each endpoint, such as 95.
+     * The metrics must also be the metrics listener of the adapter factory. The fallback delay
+     * is used until an endpoint has enough samples.
+     */
+    @NonNull
+    public static HedgePolicy percentile(@NonNull CallMetrics metrics, double percentile,
+            long fallback, TimeUnit unit) {
+        if (metrics == null) {
+            throw new NullPointerException("metrics is null");
+        }
+        if (percentile <= 0d || percentile > 100d) {
+            throw new IllegalArgumentException("percentile must be in (0, 100]");
+        }
+        if (fallback <= 0) {
+            throw new IllegalArgumentException("fallback must be positive");
+        }
+        return new HedgePolicy(unit.toMillis(fallback), metrics, percentile);
+    }
+
+    /**
+     * @param percent max hedges in percent of requests, default 5.
+     */
+    @NonNull
+    public HedgePolicy budget(int percent) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("percent must be in [0, 100]");
+        }
+        mBudgetPercent = percent;
+        return this;
+    }
+
+    public long requestCount() {
+        return mRequestCount.get();
+    }
+
+    public long hedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    /**
+     * @return count of hedges completed before the original request.
+     */
+    public long hedgeWinCount() {
+        return mHedgeWinCount.get();
+    }
+
+    /**
+     * @return hedges / requests.
+     */
+    public float hedgeRate() {
+        final long requests = mRequestCount.get();
+        return requests > 0 ? (float) mHedgeCount.get() / requests : 0f;
+    }
+
+    /**
+     * @return hedge wins / hedges.
+     */
+    public float winRate() {
+        final long hedges = mHedgeCount.get();
+        return hedges > 0 ? (float) mHedgeWinCount.get() / hedges : 0f;
+    }
+
+    /**
+     * @param endpoint such as "GET users/{id}".
+     */
+    long delayMillis(String endpoint) {
+        final CallMetrics metrics = mMetrics;
+        if (metrics != null) {
+            final CallMetrics.Stats stats = metrics.stats(endpoint);
+            if (stats != null && stats.network.count() >= MIN_SAMPLES) {
+                final long micros = stats.network.percentile(mPercentile);
+                return Math.max(1L, (micros + 999L) / 1000L);
+            }
+        }
+        return mDelayMillis;
+    }
+
+    void onRequest() {
+        mRequestCount.incrementAndGet();
+    }
+
+    void onHedgeWin() {
+        mHedgeWinCount.incrementAndGet();
+    }
+
+    /**
+     * @return true if the budget allows one more hedge.
+     */
+    boolean acquireHedge() {
+        for (; ; ) {
+            final long hedges = mHedgeCount.get();
+            if (hedges * 100 >= mRequestCount.get() * mBudgetPercent) {
+                return false;
+            }
+            if (mHedgeCount.compareAndSet(hedges, hedges + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A hedge acquired was not fired.
+     */
+    void releaseHedge() {
+        mHedgeCount.decrementAndGet();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Fires a clone of the delegate if it has not completed within the hedge delay,
+ * the first response wins and the loser is canceled.
+ */
+
+
+final class HedgingCall<R> extends ForwardingCall<R> {
+
+    private final HedgePolicy mPolicy;
+
+    private final String mEndpoint;
+
+    private final AtomicBoolean isDone = new AtomicBoolean();
+
+    /**
+     * Requests not completed yet, the last failure is delivered only if none is left.
+     * Also guards the hedge, which is fired only while the original is in flight.
+     */
+    private final AtomicInteger mInFlight = new AtomicInteger();
+
+    private volatile Call<R> mHedge;
+
+    private volatile ScheduledFuture<?> mHedgeTask;
+
+    HedgingCall(Call<R> delegate, HedgePolicy policy, String endpoint) {
+        super(delegate);
+        this.mPolicy = policy;
+        this.mEndpoint = endpoint;
+    }
+
+    @Override
+    public void enqueue(final Callback<R> callback) {
+        if (!RequestKey.isIdempotent(request())) {
+            super.enqueue(callback);
+            return;
+        }
+        mPolicy.onRequest();
+        mInFlight.set(1);
+        delegate().enqueue(new HedgeCallback(callback, false));
+        mHedgeTask = FutureCallScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (isDone.get() || isCanceled()
+                        || !hasTimeBeforeDeadline(0L) || !mPolicy.acquireHedge()) {
+                    return;
+                }
+                // published first, so a winner completing from now on cancels it.
+                final Call<R> hedge = delegate().clone();
+                mHedge = hedge;
+                if (!enterInFlight()) {
+                    // the original completed meanwhile.
+                    mPolicy.releaseHedge();
+                    return;
+                }
+                hedge.enqueue(new HedgeCallback(callback, true));
+            }
+        }, mPolicy.delayMillis(mEndpoint), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        cancelHedge();
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<R> clone() {
+        return new HedgingCall<>(delegate().clone(), mPolicy, mEndpoint);
+    }
+
+    /**
+     * @return false if no request is in flight any more, the outcome is delivered.
+     */
+    private boolean enterInFlight() {
+        for (; ; ) {
+            final int inFlight = mInFlight.get();
+            if (inFlight == 0) {
+                return false;
+            }
+            if (mInFlight.compareAndSet(inFlight, inFlight + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void cancelHedge() {
+        final ScheduledFuture<?> task = mHedgeTask;
+        if (task != null) {
+            task.cancel(false);
+        }
+        final Call<R> hedge = mHedge;
+        if (hedge != null) {
+            hedge.cancel();
+        }
+    }
+
+    private final class HedgeCallback implements Callback<R> {
+
+        private final Callback<R> mCallback;
+
+        private final boolean isHedge;
+
+        HedgeCallback(Callback<R> callback, boolean hedge) {
+            mCallback = callback;
+            isHedge = hedge;
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            mInFlight.decrementAndGet();
+            if (!isDone.compareAndSet(false, true)) {
+                return;
+            }
+            if (isHedge) {
+                mPolicy.onHedgeWin();
+                delegate().cancel();
+            } else {
+                cancelHedge();
+            }
+            mCallback.onResponse(HedgingCall.this, response);
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            // the other request may still succeed.
+            if (mInFlight.decrementAndGet() > 0 && !isCanceled()) {
+                return;
+            }
+            if (isDone.compareAndSet(false, true)) {
+                cancelHedge();
+                mCallback.onFailure(HedgingCall.this, t);
+            }
+        }
+    }
+}
@@ -28,11 +28,11 @@ import java.lang.ref.WeakReference;
  */
 
 
-public class LiveCallback<T> implements OnCallback<T> {
+public class LiveCallback<T> implements OnCallback<T>, CallbackDispatch.Liveness {
 
     private final WeakReference<Object> mOwnerRef;
 
-    private final OnCallback<T> mCallback;
+    private final WeakCallback<T> mCallback;
 
     /**
      * callback invoke, if activity is not finish or destroyed.
@@ -63,6 +63,26 @@ public class LiveCallback<T> implements OnCallback<T> {
         mOwnerRef = new WeakReference<>(owner);
     }
 
+    /**
+     * Checked off the main thread before posting, so only the owner state that is safe to
+     * read from any thread is checked, view state is checked on delivery.
+     *
+     * @return false if the owner or the callback is gone.
+     */
+    @Override
+    public boolean isAlive() {
+        final Object owner = mOwnerRef.get();
+        if (owner == null || !mCallback.isAlive()) {
+            return false;
+        }
+        if (owner instanceof Activity) {
+            return isLiveActivity((Activity) owner);
+        } else if (owner instanceof Fragment) {
+            return !((Fragment) owner).isDetached();
+        }
+        return true;
+    }
+
     @Override
     public void onResponse(int code, String message, T result) {
         if (!isOwnerLiving()) {
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Reports network start and end of every attempt of the delegate.
+ */
+
+
+final class MetricsCall<R> extends ForwardingCall<R> {
+
+    private final CallMetricsListener mListener;
+
+    private final String mEndpoint;
+
+    MetricsCall(Call<R> delegate, CallMetricsListener listener, String endpoint) {
+        super(delegate);
+        this.mListener = listener;
+        this.mEndpoint = endpoint;
+    }
+
+    @Override
+    public void enqueue(final Callback<R> callback) {
+        mListener.onNetworkStart(mEndpoint);
+        final long start = System.nanoTime();
+        delegate().enqueue(new Callback<R>() {
+            @Override
+            public void onResponse(Call<R> call, Response<R> response) {
+                mListener.onNetworkEnd(mEndpoint, response.code(), System.nanoTime() - start);
+                callback.onResponse(MetricsCall.this, response);
+            }
+
+            @Override
+            public void onFailure(Call<R> call, Throwable t) {
+                mListener.onNetworkEnd(mEndpoint, -1, System.nanoTime() - start);
+                callback.onFailure(MetricsCall.this, t);
+            }
+        });
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<R> clone() {
+        return new MetricsCall<>(delegate().clone(), mListener, mEndpoint);
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * In-memory cache of successful Packable responses, bounded by entry count and estimated bytes,
+ * evicted by LRU and TTL. An entry is sized by the body bytes read, counted by
+ * {@link #byteCounter()} if the client has it, otherwise by Content-Length.
+ */
+
+
+public final class PackableCache {
+
+    /**
+     * Estimated overhead of an entry besides the response body.
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 512;
+
+    private static final Interceptor BYTE_COUNTER = new ByteCountInterceptor();
+
+    private final int mMaxEntries;
+
+    private final long mMaxBytes;
+
+    private final long mTtlNanos;
+
+    private volatile long mStaleNanos;
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Set<String> mRevalidating =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private long mBytes;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    private final AtomicLong mEvictionCount = new AtomicLong();
+
+    private PackableCache(int maxEntries, long maxBytes, long ttlNanos) {
+        this.mMaxEntries = maxEntries;
+        this.mMaxBytes = maxBytes;
+        this.mTtlNanos = ttlNanos;
+    }
+
+    /**
+     * @param maxEntries max count of entries.
+     * @param maxBytes   max estimated bytes of entries.
+     * @param ttl        time to live of an entry.
+     */
+    public static PackableCache create(int maxEntries, long maxBytes, long ttl, TimeUnit unit) {
+        if (maxEntries <= 0 || maxBytes <= 0 || ttl <= 0) {
+            throw new IllegalArgumentException("maxEntries, maxBytes and ttl must be positive");
+        }
+        return new PackableCache(maxEntries, maxBytes, unit.toNanos(ttl));
+    }
+
+    /**
+     * An expired entry is still served during this time, while a refresh runs in background.
+     */
+    public PackableCache staleWhileRevalidate(long time, TimeUnit unit) {
+        mStaleNanos = time > 0 ? unit.toNanos(time) : 0L;
+        return this;
+    }
+
+    /**
+     * Interceptor counting the body bytes read, add it to the OkHttpClient so entries of
+     * chunked or compressed responses, which have no Content-Length, are sized too.
+     */
+    @NonNull
+    public static Interceptor byteCounter() {
+        return BYTE_COUNTER;
+    }
+
+    public long hitCount() {
+        return mHitCount.get();
+    }
+
+    public long missCount() {
+        return mMissCount.get();
+    }
+
+    public long evictionCount() {
+        return mEvictionCount.get();
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mBytes = 0;
+    }
+
+    @Nullable
+    synchronized Entry get(String key) {
+        final Entry e = mEntries.get(key);
+        if (e == null) {
+            mMissCount.incrementAndGet();
+            return null;
+        }
+        final long now = System.nanoTime();
+        if (now - e.expireAt > mStaleNanos) {
+            removeEntry(key, e);
+            mEvictionCount.incrementAndGet();
+            mMissCount.incrementAndGet();
+            return null;
+        }
+        mHitCount.incrementAndGet();
+        return e;
+    }
+
+    void put(String key, Response<?> response) {
+        if (!response.isSuccessful() || response.body() == null) {
+            return;
+        }
+        final Entry e = new Entry(response, estimateBytes(response),
+                System.nanoTime() + mTtlNanos);
+        if (e.bytes > mMaxBytes) {
+            return;
+        }
+        synchronized (this) {
+            final Entry old = mEntries.put(key, e);
+            if (old != null) {
+                mBytes -= old.bytes;
+            }
+            mBytes += e.bytes;
+            trimToSize();
+        }
+    }
+
+    /**
+     * Wrap callback to store successful response.
+     *
+     * @param callback delegate, nullable if only store.
+     */
+    <R> Callback<R> storeOnResponse(String key, @Nullable Callback<R> callback) {
+        return new StoreCallback<>(key, callback);
+    }
+
+    /**
+     * Refresh a stale entry by the not executed call, at most one refresh per key.
+     */
+    <R> void revalidate(String key, Call<R> call, Callback<R> store) {
+        if (mRevalidating.add(key)) {
+            call.enqueue(new RevalidateCallback<>(mRevalidating, key, store));
+        }
+    }
+
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while ((mEntries.size() > mMaxEntries || mBytes > mMaxBytes) && it.hasNext()) {
+            final Entry e = it.next().getValue();
+            it.remove();
+            mBytes -= e.bytes;
+            mEvictionCount.incrementAndGet();
+        }
+    }
+
+    private void removeEntry(String key, Entry e) {
+        if (mEntries.remove(key) != null) {
+            mBytes -= e.bytes;
+        }
+    }
+
+    /**
+     * Bytes of the body already read, nothing is encoded again.
+     */
+    private static long estimateBytes(Response<?> response) {
+        final okhttp3.Response raw = response.raw();
+        final ByteCount count = raw.request().tag(ByteCount.class);
+        long length = count != null ? count.bytes : -1;
+        if (length <= 0) {
+            final ResponseBody body = raw.body();
+            length = body != null ? body.contentLength() : -1;
+        }
+        return Math.max(length, 0L) + ENTRY_OVERHEAD_BYTES;
+    }
+
+    static final class Entry {
+
+        final Response<?> response;
+
+        final long bytes;
+
+        final long expireAt;
+
+        Entry(Response<?> response, long bytes, long expireAt) {
+            this.response = response;
+            this.bytes = bytes;
+            this.expireAt = expireAt;
+        }
+
+        boolean isStale() {
+            return System.nanoTime() - expireAt > 0;
+        }
+    }
+
+    private final class StoreCallback<R> implements Callback<R> {
+
+        private final String mKey;
+
+        private final Callback<R> mCallback;
+
+        StoreCallback(String key, Callback<R> callback) {
+            mKey = key;
+            mCallback = callback;
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            put(mKey, response);
+            if (mCallback != null) {
+                mCallback.onResponse(call, response);
+            }
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            if (mCallback != null) {
+                mCallback.onFailure(call, t);
+            }
+        }
+    }
+
+    static final class RevalidateCallback<R> implements Callback<R> {
+
+        private final Set<String> mRevalidating;
+
+        private final String mKey;
+
+        private final Callback<R> mCallback;
+
+        RevalidateCallback(Set<String> revalidating, String key, Callback<R> callback) {
+            mRevalidating = revalidating;
+            mKey = key;
+            mCallback = callback;
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            mRevalidating.remove(mKey);
+            mCallback.onResponse(call, response);
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            mRevalidating.remove(mKey);
+            mCallback.onFailure(call, t);
+        }
+    }
+
+    /**
+     * Body bytes read of one request, written by the reading thread only.
+     */
+    private static final class ByteCount {
+
+        volatile long bytes;
+    }
+
+    private static final class ByteCountInterceptor implements Interceptor {
+
+        @Override
+        public okhttp3.Response intercept(Chain chain) throws IOException {
+            final ByteCount count = new ByteCount();
+            final okhttp3.Response response = chain.proceed(chain.request().newBuilder()
+                    .tag(ByteCount.class, count)
+                    .build());
+            final ResponseBody body = response.body();
+            if (body == null) {
+                return response;
+            }
+            final ForwardingSource source = new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    final long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        count.bytes += read;
+                    }
+                    return read;
+                }
+            };
+            return response.newBuilder()
+                    .body(ResponseBody.create(body.contentType(), body.contentLength(),
+                            Okio.buffer(source)))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.util.Log;
+
+/**
+ * Copy-on-write snapshot of filters, evaluating the chain allocates nothing.
+ */
+
+
+final class PackableFilterChain {
+
+    private static final String TAG = PackableFilterChain.class.getSimpleName();
+
+    private static final PackableFilter<?>[] EMPTY = new PackableFilter<?>[0];
+
+    private volatile PackableFilter<?>[] mFilters = EMPTY;
+
+    synchronized void add(PackableFilter<?> filter) {
+        final PackableFilter<?>[] old = mFilters;
+        final PackableFilter<?>[] filters = new PackableFilter<?>[old.length + 1];
+        System.arraycopy(old, 0, filters, 0, old.length);
+        filters[old.length] = filter;
+        mFilters = filters;
+    }
+
+    synchronized void remove(PackableFilter<?> filter) {
+        final PackableFilter<?>[] old = mFilters;
+        for (int i = 0; i < old.length; i++) {
+            if (filter.equals(old[i])) {
+                final PackableFilter<?>[] filters = new PackableFilter<?>[old.length - 1];
+                System.arraycopy(old, 0, filters, 0, i);
+                System.arraycopy(old, i + 1, filters, i, old.length - i - 1);
+                mFilters = filters;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return mFilters.length;
+    }
+
+    /**
+     * @return true if any filter intercepted the pack.
+     */
+    @SuppressWarnings("unchecked")
+    boolean doFilter(Packable<?> pack) {
+        if (pack == null) {
+            return false;
+        }
+        final PackableFilter<?>[] filters = mFilters;
+        for (PackableFilter<?> f : filters) {
+            // filters are added for the pack type of the factory.
+            if (((PackableFilter<Packable<?>>) f).onFilter(pack)) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "packable onFilter success: " + f);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
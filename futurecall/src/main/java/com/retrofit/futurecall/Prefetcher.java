@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Registry of GET requests submitted ahead of time, such as on navigation intent or at process
+ * start. Later identical calls of a service attach to the in-flight or completed prefetch
+ * instead of starting a new request.
+ * <p>
+ * An entry expires after the time to live from its prefetch, a failed or unsuccessful
+ * prefetch is dropped at once.
+ */
+
+
+public final class Prefetcher {
+
+    private final ConcurrentMap<String, Entry<?>> mEntries = new ConcurrentHashMap<>();
+
+    private final long mTtlNanos;
+
+    private final AtomicLong mPrefetchCount = new AtomicLong();
+
+    private final AtomicLong mHitCount = new AtomicLong();
+
+    private Prefetcher(long ttlNanos) {
+        this.mTtlNanos = ttlNanos;
+    }
+
+    /**
+     * @param ttl time to live of a prefetched result.
+     */
+    @NonNull
+    public static Prefetcher create(long ttl, TimeUnit unit) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl <= 0");
+        }
+        return new Prefetcher(unit.toNanos(ttl));
+    }
+
+    /**
+     * Submit the call ahead of time. Only calls of a factory that this prefetcher is set to
+     * are attached to it, and only GET or HEAD requests are registered, others are just
+     * submitted. Does nothing if the call was submitted already. A raw ResponseBody or
+     * DataStream is read once, so it can not be prefetched.
+     *
+     * @param call a new FutureCall of a retrofit service.
+     */
+    public void prefetch(@NonNull FutureCall<?> call) {
+        if (!(call instanceof AbsFutureCall)) {
+            throw new IllegalArgumentException("not a FutureCall of a retrofit service: " + call);
+        }
+        if (call instanceof FutureStreamCall) {
+            throw new IllegalArgumentException("DataStream can not be prefetched");
+        }
+        final FutureResponseCall<?> responseCall = ((AbsFutureCall<?>) call).responseCall();
+        if (responseCall.isRawBody()) {
+            throw new IllegalArgumentException("ResponseBody can not be prefetched");
+        }
+        responseCall.prefetch(this);
+    }
+
+    /**
+     * Drop all prefetched results, in-flight prefetches still complete the calls attached.
+     */
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * @return count of requests prefetched.
+     */
+    public long prefetchCount() {
+        return mPrefetchCount.get();
+    }
+
+    /**
+     * @return count of calls attached to a prefetch.
+     */
+    public long hitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * Execute the prefetch request, or attach it to an identical live prefetch.
+     *
+     * @return the call that carries the request.
+     */
+    <R> Call<?> execute(String key, Call<R> call, Callback<R> callback) {
+        final Entry<R> entry = new Entry<>(key, call, System.nanoTime() + mTtlNanos);
+        entry.attach(callback);
+        for (; ; ) {
+            final Entry<R> e = entry(key);
+            if (e != null) {
+                if (attach(key, e, callback)) {
+                    return e.mCall;
+                }
+                continue;
+            }
+            if (mEntries.putIfAbsent(key, entry) == null) {
+                mPrefetchCount.incrementAndGet();
+                FutureCallScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        // do not leak results never asked for.
+                        mEntries.remove(entry.mKey, entry);
+                    }
+                }, mTtlNanos, TimeUnit.NANOSECONDS);
+                call.enqueue(entry);
+                return call;
+            }
+        }
+    }
+
+    /**
+     * Attach the callback to an in-flight or completed prefetch, a completed one is delivered
+     * on current thread.
+     *
+     * @return the call that carries the prefetch, null if no live prefetch of the key.
+     */
+    <R> Call<?> attach(String key, Callback<R> callback) {
+        final Entry<R> e = entry(key);
+        if (e != null && attach(key, e, callback)) {
+            mHitCount.incrementAndGet();
+            return e.mCall;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> Entry<R> entry(String key) {
+        // the key carries the response type, entries of a key share it.
+        return (Entry<R>) mEntries.get(key);
+    }
+
+    private <R> boolean attach(String key, Entry<R> entry, Callback<R> callback) {
+        if (System.nanoTime() - entry.mExpireAt < 0 && entry.attach(callback)) {
+            return true;
+        }
+        mEntries.remove(key, entry);
+        return false;
+    }
+
+    private final class Entry<R> implements Callback<R> {
+
+        private final String mKey;
+
+        private final Call<R> mCall;
+
+        private final long mExpireAt;
+
+        private List<Callback<R>> mCallbacks = new ArrayList<>(2);
+
+        private Response<R> mResponse;
+
+        Entry(String key, Call<R> call, long expireAt) {
+            mKey = key;
+            mCall = call;
+            mExpireAt = expireAt;
+        }
+
+        /**
+         * @return false if the prefetch failed.
+         */
+        boolean attach(Callback<R> callback) {
+            final Response<R> response;
+            synchronized (this) {
+                if (mCallbacks != null) {
+                    mCallbacks.add(callback);
+                    return true;
+                }
+                response = mResponse;
+            }
+            if (response == null) {
+                return false;
+            }
+            callback.onResponse(mCall, response);
+            return true;
+        }
+
+        private List<Callback<R>> finish(Response<R> response) {
+            if (response == null || !response.isSuccessful()) {
+                mEntries.remove(mKey, this);
+            }
+            synchronized (this) {
+                final List<Callback<R>> callbacks = mCallbacks;
+                mCallbacks = null;
+                mResponse = response != null && response.isSuccessful() ? response : null;
+                return callbacks;
+            }
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            for (Callback<R> cb : finish(response)) {
+                cb.onResponse(call, response);
+            }
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            for (Callback<R> cb : finish(null)) {
+                cb.onFailure(call, t);
+            }
+        }
+    }
+}
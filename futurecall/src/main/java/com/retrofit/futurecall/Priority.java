@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Priority of a service method in the {@link PriorityScheduler}, default
+ * {@link #NORMAL}. A single call can override it by
+ * {@link FutureCallHelper#priority(FutureCall, int)}.
+ */
+
+
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Priority {
+
+    /**
+     * A user is waiting on it.
+     */
+    int INTERACTIVE = 0;
+
+    int NORMAL = 1;
+
+    /**
+     * Such as sync and prefetch.
+     */
+    int BACKGROUND = 2;
+
+    /**
+     * @return one of {@link #INTERACTIVE}, {@link #NORMAL} and {@link #BACKGROUND}.
+     */
+    int value();
+}
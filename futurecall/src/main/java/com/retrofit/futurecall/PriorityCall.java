@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Enqueues the delegate when the {@link PriorityScheduler} runs it, the slot is released
+ * when the delegate completed. Retries and hedges of the call run in its slot.
+ */
+
+
+final class PriorityCall<R> extends ForwardingCall<R> {
+
+    private final PriorityScheduler mScheduler;
+
+    private volatile int mPriority;
+
+    private volatile Slot mSlot;
+
+    PriorityCall(Call<R> delegate, PriorityScheduler scheduler, int priority) {
+        super(delegate);
+        this.mScheduler = scheduler;
+        this.mPriority = priority;
+    }
+
+    /**
+     * Change the priority, a queued call is only moved to a higher priority.
+     */
+    void priority(int priority) {
+        final Slot slot = mSlot;
+        if (slot == null) {
+            mPriority = priority;
+        } else {
+            mScheduler.promote(slot, priority);
+        }
+    }
+
+    @Override
+    public void enqueue(Callback<R> callback) {
+        final Slot slot = new Slot(mPriority, callback);
+        mSlot = slot;
+        mScheduler.submit(slot);
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        final Slot slot = mSlot;
+        if (slot != null && mScheduler.remove(slot)) {
+            slot.mCallback.onFailure(this, new IOException("Canceled"));
+        }
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<R> clone() {
+        return new PriorityCall<>(delegate().clone(), mScheduler, mPriority);
+    }
+
+    private final class Slot extends PriorityScheduler.Task implements Callback<R> {
+
+        private final Callback<R> mCallback;
+
+        private final AtomicBoolean isReleased = new AtomicBoolean();
+
+        Slot(int priority, Callback<R> callback) {
+            super(priority);
+            mCallback = callback;
+        }
+
+        @Override
+        public void run() {
+            if (isCanceled()) {
+                release();
+                mCallback.onFailure(PriorityCall.this, new IOException("Canceled"));
+                return;
+            }
+            delegate().enqueue(this);
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            release();
+            mCallback.onResponse(PriorityCall.this, response);
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            release();
+            mCallback.onFailure(PriorityCall.this, t);
+        }
+
+        private void release() {
+            if (isReleased.compareAndSet(false, true)) {
+                mScheduler.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits running calls and queues the others by {@link Priority} in front of the OkHttp
+ * dispatcher, so a burst of background calls does not delay the one a user is waiting on.
+ * <p>
+ * A queued call is raised one level for each aging interval it waited, so background calls
+ * are not starved. A call blocked in get() is promoted to {@link Priority#INTERACTIVE}.
+ * The running limit should not exceed the per host limit of the OkHttp dispatcher,
+ * otherwise calls queue there in FIFO order.
+ */
+
+
+public final class PriorityScheduler {
+
+    private static final int LEVELS = Priority.BACKGROUND + 1;
+
+    private final int mMaxRunning;
+
+    private volatile long mAgingNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    /**
+     * FIFO queue per priority, guarded by the lock.
+     */
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Task>[] mQueues = (ArrayDeque<Task>[]) new ArrayDeque<?>[LEVELS];
+
+    private int mRunning;
+
+    private int mQueued;
+
+    private final AtomicLong mPromotedCount = new AtomicLong();
+
+    private PriorityScheduler(int maxRunning) {
+        this.mMaxRunning = maxRunning;
+        for (int i = 0; i < LEVELS; i++) {
+            mQueues[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * @param maxRunning max calls running at the same time.
+     */
+    @NonNull
+    public static PriorityScheduler create(int maxRunning) {
+        if (maxRunning <= 0) {
+            throw new IllegalArgumentException("maxRunning <= 0");
+        }
+        return new PriorityScheduler(maxRunning);
+    }
+
+    /**
+     * @param interval a queued call is raised one level for each interval it waited,
+     *                 default 1 second.
+     */
+    public PriorityScheduler aging(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval <= 0");
+        }
+        mAgingNanos = unit.toNanos(interval);
+        return this;
+    }
+
+    public int runningCount() {
+        mLock.lock();
+        try {
+            return mRunning;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public int queuedCount() {
+        mLock.lock();
+        try {
+            return mQueued;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @return count of queued calls promoted, such as by a blocking get().
+     */
+    public long promotedCount() {
+        return mPromotedCount.get();
+    }
+
+    /**
+     * Run the task now if under the limit, otherwise queue it by its priority.
+     */
+    void submit(Task task) {
+        mLock.lock();
+        try {
+            if (mRunning >= mMaxRunning) {
+                task.enqueuedAt = System.nanoTime();
+                task.isQueued = true;
+                mQueues[task.priority].addLast(task);
+                mQueued++;
+                return;
+            }
+            mRunning++;
+        } finally {
+            mLock.unlock();
+        }
+        task.run();
+    }
+
+    /**
+     * A running task completed, run the next one.
+     */
+    void release() {
+        final Task next;
+        mLock.lock();
+        try {
+            next = poll();
+            if (next == null) {
+                mRunning--;
+            }
+        } finally {
+            mLock.unlock();
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * @return true if the task was queued and is removed.
+     */
+    boolean remove(Task task) {
+        mLock.lock();
+        try {
+            if (!task.isQueued) {
+                return false;
+            }
+            mQueues[task.priority].remove(task);
+            task.isQueued = false;
+            mQueued--;
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Move a queued task to a higher priority, it keeps the time it waited.
+     */
+    void promote(Task task, int priority) {
+        mLock.lock();
+        try {
+            if (!task.isQueued || priority >= task.priority) {
+                return;
+            }
+            mQueues[task.priority].remove(task);
+            task.priority = priority;
+            mQueues[priority].addFirst(task);
+        } finally {
+            mLock.unlock();
+        }
+        mPromotedCount.incrementAndGet();
+    }
+
+    /**
+     * Must hold the lock. The head of each queue waited longest of its level, the one with
+     * the best priority after aging wins, ties go to the higher level.
+     */
+    private Task poll() {
+        if (mQueued == 0) {
+            return null;
+        }
+        final long now = System.nanoTime();
+        final long aging = mAgingNanos;
+        ArrayDeque<Task> best = null;
+        long bestScore = Long.MAX_VALUE;
+        for (int i = 0; i < LEVELS; i++) {
+            final Task head = mQueues[i].peekFirst();
+            if (head == null) {
+                continue;
+            }
+            final long score = i * aging - (now - head.enqueuedAt);
+            if (score < bestScore) {
+                bestScore = score;
+                best = mQueues[i];
+            }
+        }
+        final Task task = best.pollFirst();
+        task.isQueued = false;
+        mQueued--;
+        return task;
+    }
+
+    abstract static class Task implements Runnable {
+
+        /**
+         * Guarded by the scheduler lock once submitted.
+         */
+        int priority;
+
+        long enqueuedAt;
+
+        boolean isQueued;
+
+        Task(int priority) {
+            this.priority = priority;
+        }
+    }
+}
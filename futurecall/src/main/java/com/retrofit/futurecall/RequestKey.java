@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.retrofit.futurecall;
+
+import java.lang.annotation.Annotation;
+
+import okhttp3.Headers;
+import okhttp3.Request;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.HTTP;
+import retrofit2.http.OPTIONS;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+/**
+ * Identity of a request, made of method, url, headers and the type its body is converted to,
+ * so service methods of the same request but different response types never share results.
+ */
+
+
+final class RequestKey {
+
+    private RequestKey() {
+    }
+
+    static String of(Request request, String responseType) {
+        final Headers headers = request.headers();
+        final StringBuilder sb = new StringBuilder(128)
+                .append(responseType)
+                .append('\n')
+                .append(request.method())
+                .append(' ')
+                .append(request.url());
+        for (int i = 0, size = headers.size(); i < size; i++) {
+            sb.append('\n').append(headers.name(i)).append(':').append(headers.value(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return true if the request carries no body and has no side effect.
+     */
+    static boolean isSafe(Request request) {
+        final String method = request.method();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    /**
+     * @return true if repeating the request has the same effect as sending it once.
+     */
+    static boolean isIdempotent(Request request) {
+        final String method = request.method();
+        return isSafe(request) || "PUT".equals(method) || "DELETE".equals(method)
+                || "OPTIONS".equals(method);
+    }
+
+    /**
+     * @return endpoint of a service method such as "GET users/{id}", from its http annotation.
+     */
+    static String endpoint(Annotation[] annotations) {
+        for (Annotation a : annotations) {
+            if (a instanceof GET) {
+                return "GET " + ((GET) a).value();
+            } else if (a instanceof POST) {
+                return "POST " + ((POST) a).value();
+            } else if (a instanceof PUT) {
+                return "PUT " + ((PUT) a).value();
+            } else if (a instanceof DELETE) {
+                return "DELETE " + ((DELETE) a).value();
+            } else if (a instanceof PATCH) {
+                return "PATCH " + ((PATCH) a).value();
+            } else if (a instanceof HEAD) {
+                return "HEAD " + ((HEAD) a).value();
+            } else if (a instanceof OPTIONS) {
+                return "OPTIONS " + ((OPTIONS) a).value();
+            } else if (a instanceof HTTP) {
+                return ((HTTP) a).method() + " " + ((HTTP) a).path();
+            }
+        }
+        return "UNKNOWN";
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Retry policy of a service method, overrides the policy of {@link FutureCallAdapterFactory}.
+ */
+
+
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Retry {
+
+    /**
+     * @return max attempts including the first one, 1 means no retry.
+     */
+    int maxAttempts() default 3;
+
+    long initialBackoffMillis() default 100;
+
+    long maxBackoffMillis() default 2000;
+
+    /**
+     * @return retry budget, max retries in percent of requests.
+     */
+    int budgetPercent() default 10;
+}
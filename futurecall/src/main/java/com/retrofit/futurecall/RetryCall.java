@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Retries transient failures of the delegate by clones, scheduled on the shared timer,
+ * no thread is blocked between attempts.
+ */
+
+
+final class RetryCall<R> extends ForwardingCall<R> {
+
+    private static final String TAG = RetryCall.class.getSimpleName();
+
+    private final RetryPolicy mPolicy;
+
+    private volatile Call<R> mAttempt;
+
+    private volatile boolean isCanceled;
+
+    RetryCall(Call<R> delegate, RetryPolicy policy) {
+        super(delegate);
+        this.mPolicy = policy;
+        this.mAttempt = delegate;
+    }
+
+    @Override
+    public void enqueue(Callback<R> callback) {
+        if (!mPolicy.isRetryableMethod(request().method())) {
+            super.enqueue(callback);
+            return;
+        }
+        mPolicy.onRequest();
+        delegate().enqueue(new AttemptCallback(callback, 1));
+    }
+
+    @Override
+    public void cancel() {
+        isCanceled = true;
+        mAttempt.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return isCanceled || mAttempt.isCanceled();
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<R> clone() {
+        return new RetryCall<>(delegate().clone(), mPolicy);
+    }
+
+    /**
+     * @param attempt attempt just failed.
+     * @return true if a retry is scheduled.
+     */
+    private boolean scheduleRetry(final Callback<R> callback, final int attempt) {
+        if (isCanceled || attempt >= mPolicy.maxAttempts()) {
+            return false;
+        }
+        final long backoff = mPolicy.backoffMillis(attempt);
+        if (!hasTimeBeforeDeadline(TimeUnit.MILLISECONDS.toNanos(backoff))
+                || !mPolicy.acquireRetry()) {
+            return false;
+        }
+        FutureCallScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                final Call<R> next = mAttempt.clone();
+                mAttempt = next;
+                // checked after publishing, cancel() either sees the new attempt or is seen.
+                if (isCanceled) {
+                    callback.onFailure(RetryCall.this, new IOException("Canceled"));
+                    return;
+                }
+                next.enqueue(new AttemptCallback(callback, attempt + 1));
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private final class AttemptCallback implements Callback<R> {
+
+        private final Callback<R> mCallback;
+
+        private final int mAttemptNo;
+
+        AttemptCallback(Callback<R> callback, int attempt) {
+            mCallback = callback;
+            mAttemptNo = attempt;
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            if (!response.isSuccessful() && mPolicy.isRetryableCode(response.code())
+                    && scheduleRetry(mCallback, mAttemptNo)) {
+                final ResponseBody errorBody = response.errorBody();
+                if (errorBody != null) {
+                    errorBody.close();
+                }
+                Log.w(TAG, "retry " + mAttemptNo + ", code: " + response.code());
+                return;
+            }
+            mCallback.onResponse(RetryCall.this, response);
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            if (mPolicy.isRetryable(t) && scheduleRetry(mCallback, mAttemptNo)) {
+                Log.w(TAG, "retry " + mAttemptNo + ", failure: " + t.toString());
+                return;
+            }
+            mCallback.onFailure(RetryCall.this, t);
+        }
+    }
+}
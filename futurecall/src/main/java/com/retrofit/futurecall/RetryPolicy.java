@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry transient failures with exponential backoff and full jitter, bounded by a retry
+ * budget in percent of requests. Configure before retrofit create service.
+ */
+
+
+public final class RetryPolicy {
+
+    /**
+     * Retries always allowed by the budget, so low traffic can still retry.
+     */
+    private static final int MIN_BUDGET_RETRIES = 10;
+
+    private static final int[] DEFAULT_RETRY_CODES = {408, 429, 500, 502, 503, 504};
+
+    private final int mMaxAttempts;
+
+    private long mInitialBackoffMillis = 100;
+
+    private long mMaxBackoffMillis = 2000;
+
+    private double mMultiplier = 2;
+
+    private int mBudgetPercent = 10;
+
+    private int[] mRetryCodes = DEFAULT_RETRY_CODES;
+
+    private Class<?>[] mRetryExceptions;
+
+    private boolean isRetryNonIdempotent;
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+
+    private final AtomicLong mRetryCount = new AtomicLong();
+
+    private final Random mRandom = new Random();
+
+    private RetryPolicy(int maxAttempts) {
+        this.mMaxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts max attempts including the first one.
+     */
+    @NonNull
+    public static RetryPolicy create(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts < 1");
+        }
+        return new RetryPolicy(maxAttempts);
+    }
+
+    @NonNull
+    static RetryPolicy create(@NonNull Retry retry) {
+        return create(retry.maxAttempts())
+                .backoff(retry.initialBackoffMillis(), retry.maxBackoffMillis(),
+                        TimeUnit.MILLISECONDS)
+                .budget(retry.budgetPercent());
+    }
+
+    /**
+     * Backoff of attempt n is random in [0, min(max, initial * multiplier ^ (n - 1))].
+     */
+    @NonNull
+    public RetryPolicy backoff(long initial, long max, TimeUnit unit) {
+        if (initial < 0 || max < initial) {
+            throw new IllegalArgumentException("illegal backoff: " + initial + ", " + max);
+        }
+        mInitialBackoffMillis = unit.toMillis(initial);
+        mMaxBackoffMillis = unit.toMillis(max);
+        return this;
+    }
+
+    @NonNull
+    public RetryPolicy multiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier < 1");
+        }
+        mMultiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * @param percent max retries in percent of requests.
+     */
+    @NonNull
+    public RetryPolicy budget(int percent) {
+        if (percent < 0) {
+            throw new IllegalArgumentException("percent < 0");
+        }
+        mBudgetPercent = percent;
+        return this;
+    }
+
+    /**
+     * @param codes http codes to retry, default 408, 429, 500, 502, 503, 504.
+     */
+    @NonNull
+    public RetryPolicy retryOnCodes(int... codes) {
+        final int[] copy = codes.clone();
+        Arrays.sort(copy);
+        mRetryCodes = copy;
+        return this;
+    }
+
+    /**
+     * @param exceptions failures to retry, default any {@link IOException} but
+     *                   {@link CallRejectedException}.
+     */
+    @SafeVarargs
+    @NonNull
+    public final RetryPolicy retryOnExceptions(Class<? extends Throwable>... exceptions) {
+        // copied to a reifiable array, the varargs array itself never escapes.
+        final Class<?>[] copy = new Class<?>[exceptions.length];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = exceptions[i];
+        }
+        mRetryExceptions = copy;
+        return this;
+    }
+
+    /**
+     * Retry POST and PATCH too, only if the server de-duplicates them.
+     */
+    @NonNull
+    public RetryPolicy retryNonIdempotent(boolean retry) {
+        isRetryNonIdempotent = retry;
+        return this;
+    }
+
+    public long requestCount() {
+        return mRequestCount.get();
+    }
+
+    public long retryCount() {
+        return mRetryCount.get();
+    }
+
+    int maxAttempts() {
+        return mMaxAttempts;
+    }
+
+    boolean isRetryableMethod(String method) {
+        return isRetryNonIdempotent || !("POST".equals(method) || "PATCH".equals(method));
+    }
+
+    boolean isRetryableCode(int code) {
+        return Arrays.binarySearch(mRetryCodes, code) >= 0;
+    }
+
+    boolean isRetryable(Throwable t) {
+        final Class<?>[] exceptions = mRetryExceptions;
+        if (exceptions == null) {
+            // a local rejection would only be rejected again.
+            return t instanceof IOException && !(t instanceof CallRejectedException);
+        }
+        for (Class<?> clz : exceptions) {
+            if (clz.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param attempt attempt just failed, starts from 1.
+     */
+    long backoffMillis(int attempt) {
+        final double ceil = Math.min(mMaxBackoffMillis,
+                mInitialBackoffMillis * Math.pow(mMultiplier, attempt - 1));
+        synchronized (mRandom) {
+            return (long) (ceil * mRandom.nextDouble());
+        }
+    }
+
+    void onRequest() {
+        mRequestCount.incrementAndGet();
+    }
+
+    /**
+     * @return true if the budget allows one more retry.
+     */
+    boolean acquireRetry() {
+        for (; ; ) {
+            final long retries = mRetryCount.get();
+            final long limit = MIN_BUDGET_RETRIES + mRequestCount.get() * mBudgetPercent / 100;
+            if (retries >= limit) {
+                return false;
+            }
+            if (mRetryCount.compareAndSet(retries, retries + 1)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.retrofit.futurecall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Coalesce identical in-flight GET requests into one network execution,
+ * the result fans out to every participant.
+ */
+
+
+public final class SingleFlight {
+
+    private final ConcurrentMap<String, Flight<?>> mFlights = new ConcurrentHashMap<>();
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+
+    private final AtomicLong mSharedCount = new AtomicLong();
+
+    SingleFlight() {
+    }
+
+    /**
+     * @return count of requests passed through single flight.
+     */
+    public long requestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return count of requests attached to another in-flight request.
+     */
+    public long sharedCount() {
+        return mSharedCount.get();
+    }
+
+    /**
+     * @return shared / requests, 0 if no request.
+     */
+    public float dedupeRatio() {
+        final long requests = mRequestCount.get();
+        return requests > 0 ? (float) mSharedCount.get() / requests : 0f;
+    }
+
+    /**
+     * Execute the call, or attach the callback to an identical in-flight call.
+     *
+     * @return flight the callback attached to, used to leave it.
+     */
+    <R> Flight<R> execute(String key, Call<R> call, Callback<R> callback) {
+        mRequestCount.incrementAndGet();
+        Flight<R> flight = null;
+        for (; ; ) {
+            final Flight<R> f = flight(key);
+            if (f != null) {
+                if (f.join(callback)) {
+                    mSharedCount.incrementAndGet();
+                    return f;
+                }
+                // finished, but not removed yet.
+                mFlights.remove(key, f);
+                continue;
+            }
+            if (flight == null) {
+                flight = new Flight<>(key, call);
+                flight.join(callback);
+            }
+            if (mFlights.putIfAbsent(key, flight) == null) {
+                call.enqueue(flight);
+                return flight;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> Flight<R> flight(String key) {
+        // the key carries the response type, flights of a key share it.
+        return (Flight<R>) mFlights.get(key);
+    }
+
+    final class Flight<R> implements Callback<R> {
+
+        private final String mKey;
+
+        private final Call<R> mCall;
+
+        private final List<Callback<R>> mCallbacks = new ArrayList<>(2);
+
+        private boolean isFinished;
+
+        Flight(String key, Call<R> call) {
+            mKey = key;
+            mCall = call;
+        }
+
+        /**
+         * @return the call that carries the shared request.
+         */
+        Call<?> call() {
+            return mCall;
+        }
+
+        synchronized boolean join(Callback<R> callback) {
+            if (isFinished) {
+                return false;
+            }
+            mCallbacks.add(callback);
+            return true;
+        }
+
+        /**
+         * Detach the callback, the shared call is canceled only if no one is left.
+         */
+        void leave(Callback<R> callback) {
+            final boolean cancel;
+            synchronized (this) {
+                cancel = mCallbacks.remove(callback) && mCallbacks.isEmpty() && !isFinished;
+                if (cancel) {
+                    isFinished = true;
+                }
+            }
+            if (cancel) {
+                mFlights.remove(mKey, this);
+                mCall.cancel();
+            }
+        }
+
+        private List<Callback<R>> finish() {
+            mFlights.remove(mKey, this);
+            synchronized (this) {
+                isFinished = true;
+                return new ArrayList<>(mCallbacks);
+            }
+        }
+
+        @Override
+        public void onResponse(Call<R> call, Response<R> response) {
+            for (Callback<R> cb : finish()) {
+                cb.onResponse(call, response);
+            }
+        }
+
+        @Override
+        public void onFailure(Call<R> call, Throwable t) {
+            for (Callback<R> cb : finish()) {
+                cb.onFailure(call, t);
+            }
+        }
+    }
+}
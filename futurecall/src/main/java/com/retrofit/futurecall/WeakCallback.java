@@ -22,7 +22,7 @@ import java.lang.ref.WeakReference;
  */
 
 
-public class WeakCallback<T> implements OnCallback<T> {
+public class WeakCallback<T> implements OnCallback<T>, CallbackDispatch.Liveness {
 
     private final WeakReference<OnCallback<T>> mWeakRef;
 
@@ -30,6 +30,14 @@ public class WeakCallback<T> implements OnCallback<T> {
         mWeakRef = new WeakReference<>(cb);
     }
 
+    /**
+     * @return false if the callback has been collected.
+     */
+    @Override
+    public boolean isAlive() {
+        return mWeakRef.get() != null;
+    }
+
     @Override
     public void onResponse(int code, String message, T result) {
         OnCallback<T> cb = mWeakRef.get();
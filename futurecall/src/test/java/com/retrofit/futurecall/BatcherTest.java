@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Batching against a server whose batch endpoint answers a list of request paths, an item of
+ * id 0 is missing from its answer.
+ */
+public class BatcherTest {
+
+    private static final long LONG_DELAY_MILLIS = 3000;
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    interface Api {
+
+        @Batch(value = "items", maxSize = 3, maxDelayMillis = LONG_DELAY_MILLIS)
+        @GET("item/{id}")
+        FutureCall<Fixtures.Item> item(@Path("id") int id);
+
+        @Batch(value = "items", maxSize = 3, maxDelayMillis = 20)
+        @GET("item/{id}")
+        FutureCall<Fixtures.Item> soon(@Path("id") int id);
+    }
+
+    interface BatchApi {
+
+        @POST("batch")
+        Call<List<Fixtures.Pack<Fixtures.Item>>> batch(@Body List<String> paths);
+    }
+
+    @Test
+    public void fullWindowIsOneRequest() throws Exception {
+        serve();
+        final Api api = api(Fixtures.factory());
+        final long start = System.nanoTime();
+        assertNames(api.item(1).submit(), api.item(2).submit(), api.item(3).submit());
+        assertTrue(elapsedMillis(start) < LONG_DELAY_MILLIS / 2);
+        assertEquals(1, server.getRequestCount());
+        assertEquals("/batch", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void lonelyCallIsSentAsIs() throws Exception {
+        serve();
+        final Api api = api(Fixtures.factory());
+        assertEquals("1", api.soon(1).get().name);
+        assertEquals("/item/1", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void failsPerItem() throws Exception {
+        serve();
+        final Api api = api(Fixtures.factory());
+        final FutureCall<Fixtures.Item> first = api.item(1).submit();
+        final FutureCall<Fixtures.Item> missing = api.item(0).submit();
+        final FutureCall<Fixtures.Item> last = api.item(3).submit();
+        assertEquals("1", first.get().name);
+        assertNull(missing.get());
+        assertEquals("3", last.get().name);
+    }
+
+    @Test
+    public void windowFillsBelowAdmissionLimits() throws Exception {
+        serve();
+        final Bulkhead bulkhead = Bulkhead.create(1);
+        final Api api = api(Fixtures.factory()
+                .setBulkhead(bulkhead)
+                .setPriorityScheduler(PriorityScheduler.create(1)));
+        final long start = System.nanoTime();
+        assertNames(api.item(1).submit(), api.item(2).submit(), api.item(3).submit());
+        assertTrue(elapsedMillis(start) < LONG_DELAY_MILLIS / 2);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @SafeVarargs
+    private static void assertNames(FutureCall<Fixtures.Item>... calls) throws Exception {
+        for (int i = 0; i < calls.length; i++) {
+            assertEquals(String.valueOf(i + 1), calls[i].get(5, TimeUnit.SECONDS).name);
+        }
+    }
+
+    private Api api(FutureCallAdapterFactory<?> factory) {
+        final Retrofit batchRetrofit = Fixtures.retrofit(server, Fixtures.factory());
+        final BatchApi batchApi = batchRetrofit.create(BatchApi.class);
+        factory.addBatchAdapter("items", new BatchAdapter<List<Fixtures.Pack<Fixtures.Item>>>() {
+            @Override
+            public Call<List<Fixtures.Pack<Fixtures.Item>>> newBatchCall(List<Request> requests) {
+                final List<String> paths = new ArrayList<>(requests.size());
+                for (Request r : requests) {
+                    paths.add(r.url().encodedPath());
+                }
+                return batchApi.batch(paths);
+            }
+
+            @Override
+            public List<? extends Response<?>> split(List<Request> requests,
+                    Response<List<Fixtures.Pack<Fixtures.Item>>> response) throws IOException {
+                final List<Response<?>> responses = new ArrayList<>(requests.size());
+                for (Fixtures.Pack<Fixtures.Item> pack : response.body()) {
+                    responses.add(pack != null ? Response.success(pack) : null);
+                }
+                return responses;
+            }
+        });
+        return Fixtures.create(server, factory, Api.class);
+    }
+
+    private void serve() {
+        final Gson gson = new Gson();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (!"/batch".equals(request.getPath())) {
+                    return new MockResponse().setBody(Fixtures.itemJson(id(request.getPath())));
+                }
+                final List<String> paths = gson.fromJson(request.getBody().readUtf8(),
+                        new TypeToken<List<String>>() {
+                        }.getType());
+                final StringBuilder body = new StringBuilder("[");
+                for (String path : paths) {
+                    if (body.length() > 1) {
+                        body.append(',');
+                    }
+                    final String id = id(path);
+                    body.append("0".equals(id) ? "null" : Fixtures.itemJson(id));
+                }
+                return new MockResponse().setBody(body.append(']').toString());
+            }
+        });
+    }
+
+    private static String id(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
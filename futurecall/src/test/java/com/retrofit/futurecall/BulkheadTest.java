@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bulkhead of one permit and no queue, in front of a slow server.
+ */
+public class BulkheadTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void rejectionIsObservable() throws Exception {
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("x"))
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        final Bulkhead bulkhead = Bulkhead.create(1).maxQueue(0);
+        final Fixtures.Api api = Fixtures.create(server,
+                Fixtures.factory().setBulkhead(bulkhead), Fixtures.Api.class);
+        final FutureCall<Fixtures.Item> running = api.item().submit();
+        final FutureCall<Fixtures.Item> rejected = api.item();
+        assertNull(rejected.get());
+        final Throwable t = FutureCallHelper.failureOf(rejected);
+        assertTrue(t instanceof CallRejectedException);
+        assertEquals(Bulkhead.CODE_REJECTED, ((CallRejectedException) t).code());
+        assertEquals(1, bulkhead.rejectedCount());
+        assertEquals("x", running.get().name);
+        assertNull(FutureCallHelper.failureOf(running));
+    }
+}
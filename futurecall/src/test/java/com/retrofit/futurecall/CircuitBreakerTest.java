@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Circuit of a failing endpoint, tripped after two calls.
+ */
+public class CircuitBreakerTest {
+
+    private static final String ENDPOINT = "GET item";
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void openCircuitIsObservable() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        final CircuitBreaker breaker = CircuitBreaker.create()
+                .minimumCalls(2)
+                .openDuration(1, TimeUnit.MINUTES);
+        final Fixtures.Api api = open(breaker);
+        assertNull(api.item().get());
+        assertNull(api.item().get());
+        assertEquals(CircuitBreaker.STATE_OPEN, breaker.stateOf(ENDPOINT));
+
+        final FutureCall<Fixtures.Item> call = api.item();
+        assertNull(call.get());
+        final Throwable t = FutureCallHelper.failureOf(call);
+        assertTrue(t instanceof CallRejectedException);
+        assertEquals(CircuitBreaker.CODE_OPEN, ((CallRejectedException) t).code());
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, breaker.shortCircuitedCount());
+    }
+
+    @Test
+    public void probesCloseCircuit() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setBody(Fixtures.itemJson("x")));
+        }
+        final CircuitBreaker breaker = CircuitBreaker.create()
+                .minimumCalls(1)
+                .halfOpenCalls(2)
+                .openDuration(100, TimeUnit.MILLISECONDS);
+        final Fixtures.Api api = open(breaker);
+        assertNull(api.item().get());
+        assertEquals(CircuitBreaker.STATE_OPEN, breaker.stateOf(ENDPOINT));
+        Thread.sleep(150);
+        assertEquals("x", api.item().get().name);
+        assertEquals(CircuitBreaker.STATE_HALF_OPEN, breaker.stateOf(ENDPOINT));
+        assertEquals("x", api.item().get().name);
+        assertEquals(CircuitBreaker.STATE_CLOSED, breaker.stateOf(ENDPOINT));
+        assertEquals("x", api.item().get().name);
+        assertEquals(CircuitBreaker.STATE_CLOSED, breaker.stateOf(ENDPOINT));
+    }
+
+    private Fixtures.Api open(CircuitBreaker breaker) {
+        return Fixtures.create(server, Fixtures.factory().setCircuitBreaker(breaker),
+                Fixtures.Api.class);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DiskCache on a plain JVM, files in a temp dir.
+ */
+public class DiskCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void getReturnsLastPut() throws Exception {
+        final DiskCache cache = DiskCache.open(tmp.newFolder(), 1 << 20);
+        assertNull(cache.get("a"));
+        cache.put("a", bytes("1"));
+        cache.put("b", bytes("2"));
+        cache.put("a", bytes("3"));
+        assertArrayEquals(bytes("3"), cache.get("a"));
+        assertArrayEquals(bytes("2"), cache.get("b"));
+        assertEquals(2, cache.size());
+        cache.close();
+    }
+
+    @Test
+    public void survivesReopen() throws Exception {
+        final File dir = tmp.newFolder();
+        final DiskCache cache = DiskCache.open(dir, 1 << 20);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, bytes("value" + i));
+        }
+        cache.close();
+        final DiskCache reopened = DiskCache.open(dir, 1 << 20);
+        assertEquals(1000, reopened.size());
+        assertArrayEquals(bytes("value999"), reopened.get("key999"));
+        reopened.close();
+    }
+
+    @Test
+    public void rebuildsLostIndex() throws Exception {
+        final File dir = tmp.newFolder();
+        final DiskCache cache = DiskCache.open(dir, 1 << 20);
+        cache.put("a", bytes("1"));
+        cache.put("a", bytes("2"));
+        cache.close();
+        assertTrue(new File(dir, "futurecall.idx").delete());
+        final DiskCache reopened = DiskCache.open(dir, 1 << 20);
+        assertArrayEquals(bytes("2"), reopened.get("a"));
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void compactsOverByteCap() throws Exception {
+        final long maxBytes = 4096;
+        final DiskCache cache = DiskCache.open(tmp.newFolder(), maxBytes);
+        for (int i = 0; i < 500; i++) {
+            cache.put("key" + i, new byte[64]);
+        }
+        assertTrue(cache.byteSize() <= maxBytes);
+        assertNotNull("newest record is kept", cache.get("key499"));
+        assertNull("oldest record is dropped", cache.get("key0"));
+        cache.close();
+    }
+
+    @Test
+    public void servesLastKnownGoodAfterRestart() throws Exception {
+        final File dir = tmp.newFolder();
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("old")));
+        final DiskCache cache = DiskCache.open(dir, 1 << 20);
+        final Fixtures.Api api = Fixtures.create(server,
+                Fixtures.factory().setDiskCache(cache), Fixtures.Api.class);
+        assertEquals("old", api.item().get().name);
+        awaitStored(cache);
+        cache.close();
+
+        // a new process, the refresh is still on the way.
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("new"))
+                .setBodyDelay(200, TimeUnit.MILLISECONDS));
+        final DiskCache reopened = DiskCache.open(dir, 1 << 20);
+        final Fixtures.Api restarted = Fixtures.create(server,
+                Fixtures.factory().setDiskCache(reopened), Fixtures.Api.class);
+        assertEquals("old", restarted.item().get().name);
+        assertNotNull(server.takeRequest(2, TimeUnit.SECONDS));
+        assertNotNull("revalidated", server.takeRequest(2, TimeUnit.SECONDS));
+        reopened.close();
+    }
+
+    @Test
+    public void diskHitIsDispatchedToCallbackExecutor() throws Exception {
+        final File dir = tmp.newFolder();
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("old")));
+        final DiskCache cache = DiskCache.open(dir, 1 << 20);
+        final Fixtures.Api api = Fixtures.create(server,
+                Fixtures.factory().setDiskCache(cache), Fixtures.Api.class);
+        assertEquals("old", api.item().get().name);
+        awaitStored(cache);
+
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("new"))
+                .setBodyDelay(200, TimeUnit.MILLISECONDS));
+        final AtomicReference<String> thread = new AtomicReference<>();
+        final AtomicReference<String> name = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        api.item().enqueue(new OnCallback<Fixtures.Item>() {
+            @Override
+            public void onResponse(int code, String message, Fixtures.Item result) {
+                thread.set(Thread.currentThread().getName());
+                name.set(result.name);
+                done.countDown();
+            }
+
+            @Override
+            public void onError() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("old", name.get());
+        final String executorThread = Fixtures.CALLBACK_EXECUTOR.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        }).get();
+        assertEquals(executorThread, thread.get());
+        cache.close();
+    }
+
+    /**
+     * Results are written on the io thread, after the callback.
+     */
+    private static void awaitStored(DiskCache cache) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.size() == 0 && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, cache.size());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(UTF_8);
+    }
+}
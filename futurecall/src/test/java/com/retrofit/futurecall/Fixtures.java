@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+
+/**
+ * Service, entities and retrofit of the tests.
+ */
+final class Fixtures {
+
+    static final ExecutorService CALLBACK_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private Fixtures() {
+    }
+
+    static final class Item implements IData {
+
+        String name;
+    }
+
+    static final class Pack<T> implements Packable<T> {
+
+        int resultCode;
+
+        String resultMessage;
+
+        T result;
+
+        @Override
+        public T data() {
+            return result;
+        }
+
+        @Override
+        public int code() {
+            return resultCode;
+        }
+
+        @Override
+        public String message() {
+            return resultMessage;
+        }
+    }
+
+    interface Api {
+
+        @GET("item")
+        FutureCall<Item> item();
+
+        @GET("item")
+        FutureCall<Pack<Item>> pack();
+
+        @GET("item/{id}")
+        FutureCall<Item> item(@Path("id") int id);
+
+        @GET("items")
+        FutureCall<List<Item>> items();
+    }
+
+    static String itemJson(String name) {
+        return "{\"resultCode\":0,\"resultMessage\":\"ok\",\"result\":{\"name\":\"" + name + "\"}}";
+    }
+
+    static FutureCallAdapterFactory<Pack> factory() {
+        return FutureCallAdapterFactory.create(Pack.class);
+    }
+
+    static Retrofit.Builder builder(MockWebServer server, FutureCallAdapterFactory<?> factory) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .addCallAdapterFactory(factory)
+                .callbackExecutor(CALLBACK_EXECUTOR);
+    }
+
+    static Retrofit retrofit(MockWebServer server, FutureCallAdapterFactory<?> factory) {
+        return builder(server, factory).build();
+    }
+
+    static <T> T create(MockWebServer server, FutureCallAdapterFactory<?> factory,
+            Class<T> service) {
+        return retrofit(server, factory).create(service);
+    }
+}
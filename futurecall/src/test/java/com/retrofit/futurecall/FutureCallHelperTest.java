@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FutureCallHelperTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void bridgeCompletesWithData() throws Exception {
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("x")));
+        final Fixtures.Api api = Fixtures.create(server, Fixtures.factory(), Fixtures.Api.class);
+        final CompletableFuture<Fixtures.Item> future =
+                FutureCallHelper.toCompletableFuture(api.item());
+        assertEquals("x", future.get(2, TimeUnit.SECONDS).name);
+    }
+
+    @Test
+    public void bridgeCompletesWithNullIfIntercepted() throws Exception {
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("x")));
+        final FutureCallAdapterFactory<Fixtures.Pack> factory = Fixtures.factory()
+                .addFilter(new PackableFilter<Fixtures.Pack>() {
+                    @Override
+                    public boolean onFilter(Fixtures.Pack pack) {
+                        return true;
+                    }
+                });
+        final Fixtures.Api api = Fixtures.create(server, factory, Fixtures.Api.class);
+        assertNull(FutureCallHelper.toCompletableFuture(api.item()).get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void bridgeCompletesExceptionallyIfFailed() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        final Fixtures.Api api = Fixtures.create(server, Fixtures.factory(), Fixtures.Api.class);
+        try {
+            FutureCallHelper.toCompletableFuture(api.item()).get(2, TimeUnit.SECONDS);
+            fail("completed normally");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof java.io.IOException);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Paging against a server whose pages are keyed by number, up to page 3.
+ */
+public class FuturePagerTest {
+
+    private static final int MAX_NEXT = 10;
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    interface Api {
+
+        @GET("page/{n}")
+        FutureCall<Fixtures.Pack<List<Fixtures.Item>>> page(@Path("n") int n);
+    }
+
+    @Test
+    public void interceptedPageEndsPaging() throws Exception {
+        server.enqueue(new MockResponse().setBody(pageJson(0)));
+        server.enqueue(new MockResponse().setBody(pageJson(1)));
+        final FutureCallAdapterFactory<Fixtures.Pack> factory = Fixtures.factory()
+                .addFilter(new PackableFilter<Fixtures.Pack>() {
+                    @Override
+                    public boolean onFilter(Fixtures.Pack pack) {
+                        return pack.resultCode != 0;
+                    }
+                });
+        final FuturePager<Integer, Fixtures.Pack<List<Fixtures.Item>>> pager =
+                pager(Fixtures.create(server, factory, Api.class));
+        int pages = 0;
+        int calls = 0;
+        while (pager.hasNext() && calls++ < MAX_NEXT) {
+            if (pager.next(2, TimeUnit.SECONDS) != null) {
+                pages++;
+            }
+        }
+        assertFalse(pager.hasNext());
+        assertEquals(1, pages);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void failedPageIsRequestedAgain() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody(pageJson(0)));
+        final FuturePager<Integer, Fixtures.Pack<List<Fixtures.Item>>> pager =
+                pager(Fixtures.create(server, Fixtures.factory(), Api.class)).prefetch(0);
+        assertNull(pager.next(2, TimeUnit.SECONDS));
+        assertTrue(pager.hasNext());
+        assertEquals(2, pager.next(2, TimeUnit.SECONDS).data().size());
+        assertEquals("/page/1", server.takeRequest().getPath());
+        assertEquals("/page/1", server.takeRequest().getPath());
+        pager.cancel();
+    }
+
+    private static FuturePager<Integer, Fixtures.Pack<List<Fixtures.Item>>> pager(
+            final Api api) {
+        return FuturePager.create(1,
+                new FuturePager.PageLoader<Integer, Fixtures.Pack<List<Fixtures.Item>>>() {
+                    @Override
+                    public FutureCall<Fixtures.Pack<List<Fixtures.Item>>> load(Integer key) {
+                        return api.page(key);
+                    }
+                },
+                new FuturePager.KeyExtractor<Integer, Fixtures.Pack<List<Fixtures.Item>>>() {
+                    @Override
+                    public Integer nextKey(Integer key, Fixtures.Pack<List<Fixtures.Item>> page) {
+                        return key < 3 ? key + 1 : null;
+                    }
+                });
+    }
+
+    private static String pageJson(int resultCode) {
+        return "{\"resultCode\":" + resultCode + ",\"resultMessage\":\"ok\",\"result\":"
+                + "[{\"name\":\"a\"},{\"name\":\"b\"}]}";
+    }
+}
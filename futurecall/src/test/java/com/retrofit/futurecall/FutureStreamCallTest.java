@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.http.GET;
+import retrofit2.http.Streaming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Streams of one element per line, decoded off the callback thread and released unread.
+ */
+public class FutureStreamCallTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private final CountDownLatch mBodyClosed = new CountDownLatch(1);
+
+    private final AtomicReference<String> mDecodeThread = new AtomicReference<>();
+
+    interface Api {
+
+        @Streaming
+        @GET("lines")
+        FutureCall<DataStream<String>> lines();
+    }
+
+    @Test
+    public void decodesBeforeDispatch() throws Exception {
+        server.enqueue(new MockResponse().setBody("a\nb\n"));
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> callbackThread = new AtomicReference<>();
+        final AtomicReference<String> first = new AtomicReference<>();
+        api().lines().enqueue(new OnCallback<DataStream<String>>() {
+            @Override
+            public void onResponse(int code, String message, DataStream<String> result) {
+                callbackThread.set(Thread.currentThread().getName());
+                first.set(result.next());
+                done.countDown();
+            }
+
+            @Override
+            public void onError() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("a", first.get());
+        assertTrue(mDecodeThread.get().startsWith("OkHttp"));
+        assertNotEquals(mDecodeThread.get(), callbackThread.get());
+    }
+
+    @Test
+    public void releasesBodyAfterGetTimeout() throws Exception {
+        server.enqueue(new MockResponse().setBody("a\n")
+                .setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        assertNull(api().lines().get(50, TimeUnit.MILLISECONDS, false));
+        assertTrue(mBodyClosed.await(5, TimeUnit.SECONDS));
+        assertNull(mDecodeThread.get());
+    }
+
+    @Test
+    public void releasesBodyCanceledAfterCompletion() throws Exception {
+        server.enqueue(new MockResponse().setBody("a\n"));
+        final FutureCall<DataStream<String>> call = api().lines().submit();
+        ((AbsFutureCall<?>) call).responseCall().get(5, TimeUnit.SECONDS, true);
+        assertEquals(1, mBodyClosed.getCount());
+        call.cancel();
+        assertTrue(mBodyClosed.await(5, TimeUnit.SECONDS));
+    }
+
+    private Api api() {
+        final OkHttpClient client = new OkHttpClient.Builder()
+                .addNetworkInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        final Response response = chain.proceed(chain.request());
+                        return response.newBuilder()
+                                .body(new ClosingBody(response.body()))
+                                .build();
+                    }
+                })
+                .build();
+        return Fixtures.builder(server, Fixtures.factory().setStreamDecoder(new LineDecoder()))
+                .client(client)
+                .build()
+                .create(Api.class);
+    }
+
+    /**
+     * Counts down once its source is closed.
+     */
+    private final class ClosingBody extends ResponseBody {
+
+        private final ResponseBody mBody;
+
+        private final BufferedSource mSource;
+
+        ClosingBody(ResponseBody body) {
+            mBody = body;
+            mSource = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public void close() throws IOException {
+                    mBodyClosed.countDown();
+                    super.close();
+                }
+            });
+        }
+
+        @Override
+        public okhttp3.MediaType contentType() {
+            return mBody.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return mBody.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return mSource;
+        }
+    }
+
+    private final class LineDecoder implements DataStreamDecoder {
+
+        @Override
+        public <T> DataStream<T> decode(ResponseBody body, Type elementType) throws IOException {
+            mDecodeThread.set(Thread.currentThread().getName());
+            final BufferedSource source = body.source();
+            final String firstLine = source.readUtf8Line();
+            return new DataStream<T>() {
+
+                private String mLine = firstLine;
+
+                @Override
+                public int code() {
+                    return 0;
+                }
+
+                @Override
+                public String message() {
+                    return "ok";
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return mLine != null;
+                }
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public T next() {
+                    final String line = mLine;
+                    try {
+                        mLine = source.readUtf8Line();
+                    } catch (IOException e) {
+                        mLine = null;
+                    }
+                    return (T) line;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    source.close();
+                }
+            };
+        }
+    }
+}
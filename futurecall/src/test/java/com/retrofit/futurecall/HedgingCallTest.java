@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hedging against a server whose latency is set per request.
+ */
+public class HedgingCallTest {
+
+    private static final long SLOW_MILLIS = 3000;
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void hedgeWinsOverSlowOriginal() throws Exception {
+        slowRequest(0);
+        final HedgePolicy policy = HedgePolicy.create(100, TimeUnit.MILLISECONDS).budget(100);
+        final Fixtures.Api api = Fixtures.create(server,
+                Fixtures.factory().setHedgePolicy(policy), Fixtures.Api.class);
+        final long start = System.nanoTime();
+        assertEquals("x", api.item().get().name);
+        assertTrue(elapsedMillis(start) < SLOW_MILLIS / 2);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, policy.hedgeCount());
+        assertEquals(1, policy.hedgeWinCount());
+    }
+
+    @Test
+    public void noHedgeBeforeDelay() throws Exception {
+        slowRequest(-1);
+        final HedgePolicy policy = HedgePolicy.create(2, TimeUnit.SECONDS).budget(100);
+        final Fixtures.Api api = Fixtures.create(server,
+                Fixtures.factory().setHedgePolicy(policy), Fixtures.Api.class);
+        assertEquals("x", api.item().get().name);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, policy.hedgeCount());
+    }
+
+    @Test
+    public void percentileDelayFollowsObservedLatency() throws Exception {
+        slowRequest(20);
+        final CallMetrics metrics = new CallMetrics();
+        // the fallback would never hedge in time.
+        final HedgePolicy policy = HedgePolicy.percentile(metrics, 95, 1, TimeUnit.MINUTES)
+                .budget(100);
+        final Fixtures.Api api = Fixtures.create(server, Fixtures.factory()
+                .setMetricsListener(metrics)
+                .setHedgePolicy(policy), Fixtures.Api.class);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("x", api.item().get().name);
+        }
+        assertEquals(0, policy.hedgeCount());
+        final long start = System.nanoTime();
+        assertEquals("x", api.item().get().name);
+        assertTrue(elapsedMillis(start) < SLOW_MILLIS / 2);
+        assertEquals(1, policy.hedgeCount());
+    }
+
+    /**
+     * @param index request answered after {@link #SLOW_MILLIS}, others at once.
+     */
+    private void slowRequest(final int index) {
+        final AtomicInteger count = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                final MockResponse response = new MockResponse().setBody(Fixtures.itemJson("x"));
+                if (count.getAndIncrement() == index) {
+                    response.setHeadersDelay(SLOW_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                return response;
+            }
+        });
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Memory cache of chunked responses, which have no Content-Length.
+ */
+public class PackableCacheTest {
+
+    /**
+     * Holds three entries by overhead alone, but not three bodies as well.
+     */
+    private static final long MAX_BYTES = 1700;
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void sizesChunkedBodiesByBytesRead() throws Exception {
+        final PackableCache cache = PackableCache.create(10, MAX_BYTES, 1, TimeUnit.MINUTES);
+        final Fixtures.Api api = api(cache, new OkHttpClient.Builder()
+                .addInterceptor(PackableCache.byteCounter())
+                .build());
+        fetchThree(api);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void withoutCounterOnlyOverheadIsCounted() throws Exception {
+        final PackableCache cache = PackableCache.create(10, MAX_BYTES, 1, TimeUnit.MINUTES);
+        fetchThree(api(cache, new OkHttpClient()));
+        assertEquals(3, cache.size());
+    }
+
+    private void fetchThree(Fixtures.Api api) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse()
+                    .setChunkedBody(Fixtures.itemJson("item" + i), 16));
+            assertEquals("item" + i, api.item(i).get().name);
+        }
+    }
+
+    private Fixtures.Api api(PackableCache cache, OkHttpClient client) {
+        final Retrofit retrofit = Fixtures.builder(server, Fixtures.factory().setCache(cache))
+                .client(client)
+                .build();
+        return retrofit.create(Fixtures.Api.class);
+    }
+}
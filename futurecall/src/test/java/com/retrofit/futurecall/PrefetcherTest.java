@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PrefetcherTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    interface Api {
+
+        @GET("item")
+        FutureCall<Fixtures.Item> item();
+
+        @GET("item")
+        FutureCall<ResponseBody> raw();
+    }
+
+    @Test
+    public void laterCallAttachesToPrefetch() throws Exception {
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("x")));
+        final Prefetcher prefetcher = Prefetcher.create(30, TimeUnit.SECONDS);
+        final Api api = Fixtures.create(server, Fixtures.factory().setPrefetcher(prefetcher),
+                Api.class);
+        prefetcher.prefetch(api.item());
+        assertEquals("x", api.item().get(2, TimeUnit.SECONDS).name);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, prefetcher.hitCount());
+    }
+
+    @Test
+    public void rawBodyIsNotPrefetched() throws Exception {
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("x")));
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("x")));
+        final Prefetcher prefetcher = Prefetcher.create(30, TimeUnit.SECONDS);
+        final Api api = Fixtures.create(server, Fixtures.factory().setPrefetcher(prefetcher),
+                Api.class);
+        try {
+            prefetcher.prefetch(api.raw());
+            fail("raw body prefetched");
+        } catch (IllegalArgumentException expected) {
+            // read once, it can not be handed out to a later call.
+        }
+        assertEquals(Fixtures.itemJson("x"), api.raw().get(2, TimeUnit.SECONDS).string());
+        assertEquals(Fixtures.itemJson("x"), api.raw().get(2, TimeUnit.SECONDS).string());
+        assertEquals(0, prefetcher.prefetchCount());
+    }
+}
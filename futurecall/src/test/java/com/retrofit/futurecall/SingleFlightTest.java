@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Identical calls submitted while the first is in flight, against a server that answers
+ * after a delay.
+ */
+public class SingleFlightTest {
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    interface Api {
+
+        @GET("item")
+        FutureCall<Fixtures.Item> item();
+
+        @GET("item")
+        FutureCall<ResponseBody> raw();
+    }
+
+    @Test
+    public void convertedBodiesShareOneRequest() throws Exception {
+        final Api api = api();
+        final FutureCall<Fixtures.Item> first = api.item().submit();
+        final FutureCall<Fixtures.Item> second = api.item().submit();
+        assertEquals("x", first.get(2, TimeUnit.SECONDS).name);
+        assertEquals("x", second.get(2, TimeUnit.SECONDS).name);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void rawBodiesAreNotShared() throws Exception {
+        final Api api = api();
+        final FutureCall<ResponseBody> first = api.raw().submit();
+        final FutureCall<ResponseBody> second = api.raw().submit();
+        // each caller reads its own body.
+        assertEquals(Fixtures.itemJson("x"), first.get(2, TimeUnit.SECONDS).string());
+        assertEquals(Fixtures.itemJson("x"), second.get(2, TimeUnit.SECONDS).string());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private Api api() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setBody(Fixtures.itemJson("x"))
+                        .setHeadersDelay(200, TimeUnit.MILLISECONDS);
+            }
+        });
+        return Fixtures.create(server, Fixtures.factory().enableSingleFlight(), Api.class);
+    }
+}
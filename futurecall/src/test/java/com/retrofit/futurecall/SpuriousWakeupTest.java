@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Timed get() keeps its deadline while waiters are woken spuriously.
+ */
+public class SpuriousWakeupTest {
+
+    private static final long TIMEOUT_MILLIS = 300;
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    private Fixtures.Api api;
+
+    private final List<Thread> wakers = new ArrayList<>();
+
+    private volatile boolean isWaking;
+
+    @Before
+    public void setUp() {
+        api = Fixtures.create(server, Fixtures.factory(), Fixtures.Api.class);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        isWaking = false;
+        for (Thread t : wakers) {
+            t.join();
+        }
+    }
+
+    /**
+     * Unpark the targets again and again, as a spurious wakeup would.
+     */
+    private void wake(final List<Thread> targets) {
+        isWaking = true;
+        final Thread waker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (isWaking) {
+                    for (Thread t : targets) {
+                        LockSupport.unpark(t);
+                    }
+                    LockSupport.parkNanos(100000L);
+                }
+            }
+        });
+        wakers.add(waker);
+        waker.start();
+    }
+
+    @Test
+    public void timedGetWaitsTheFullTimeout() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        final List<Thread> self = new ArrayList<>();
+        self.add(Thread.currentThread());
+        wake(self);
+        final long start = System.nanoTime();
+        assertNull(api.item().get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        final long elapsed = System.nanoTime() - start;
+        assertTrue("returned after " + elapsed + "ns",
+                elapsed >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void timedGetThrowsOnlyAtTheDeadline() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        final List<Thread> self = new ArrayList<>();
+        self.add(Thread.currentThread());
+        wake(self);
+        final long start = System.nanoTime();
+        try {
+            api.item().get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, true);
+            fail("no timeout");
+        } catch (TimeoutException e) {
+            assertTrue(System.nanoTime() - start
+                    >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        }
+    }
+
+    @Test
+    public void manyWaitersGetTheResultUnderWakeupStorm() throws Exception {
+        server.enqueue(new MockResponse().setBody(Fixtures.itemJson("x"))
+                .setBodyDelay(200, TimeUnit.MILLISECONDS));
+        final FutureCall<Fixtures.Item> call = api.item().submit();
+        final int waiters = 32;
+        final CountDownLatch done = new CountDownLatch(waiters);
+        final AtomicInteger results = new AtomicInteger();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < waiters; i++) {
+            final Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final Fixtures.Item item = call.get(5, TimeUnit.SECONDS);
+                        if (item != null && "x".equals(item.name)) {
+                            results.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        // counted as missing result.
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        wake(threads);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(waiters, results.get());
+        assertEquals(1, server.getRequestCount());
+    }
+}
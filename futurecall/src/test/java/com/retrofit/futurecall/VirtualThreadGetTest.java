@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+
+package com.retrofit.futurecall;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 100k concurrent blocking get() on virtual threads, skipped on a JVM without them, and the
+ * same check on a pool of platform threads, which runs on any JVM.
+ * Callers of one id share a request by single flight, so the server sees a few hundred.
+ */
+public class VirtualThreadGetTest {
+
+    private static final int CALLERS = 100000;
+
+    private static final int IDS = 100;
+
+    private static final int PLATFORM_THREADS = 200;
+
+    private static final int PLATFORM_CALLERS = 5000;
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Test
+    public void manyBlockingGetOnVirtualThreads() throws Exception {
+        final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        Assume.assumeTrue("no virtual threads on this JVM", executor != null);
+        assertManyBlockingGet(executor, CALLERS);
+    }
+
+    @Test
+    public void manyBlockingGetOnPlatformThreads() throws Exception {
+        // every thread blocks in get(), so the waiters outnumber the requests in flight.
+        assertManyBlockingGet(Executors.newFixedThreadPool(PLATFORM_THREADS), PLATFORM_CALLERS);
+    }
+
+    private void assertManyBlockingGet(ExecutorService executor, int callers)
+            throws InterruptedException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setBody(Fixtures.itemJson("x"))
+                        .setHeadersDelay(20, TimeUnit.MILLISECONDS);
+            }
+        });
+        final OkHttpClient client = new OkHttpClient();
+        client.dispatcher().setMaxRequestsPerHost(IDS);
+        final Fixtures.Api api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .addCallAdapterFactory(Fixtures.factory().enableSingleFlight())
+                .callbackExecutor(Executors.newSingleThreadExecutor())
+                .build()
+                .create(Fixtures.Api.class);
+
+        final AtomicInteger succeeded = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(callers);
+        for (int i = 0; i < callers; i++) {
+            final int id = i % IDS;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final Fixtures.Item item = api.item(id).get();
+                        if (item != null && "x".equals(item.name)) {
+                            succeeded.incrementAndGet();
+                        }
+                    } catch (Exception ignored) {
+                        // counted as not succeeded.
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        assertTrue("callers still blocked", done.await(2, TimeUnit.MINUTES));
+        executor.shutdown();
+        assertEquals(callers, succeeded.get());
+    }
+
+    /**
+     * @return null if the JVM has no virtual threads, such as before Java 21.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            final Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -52,8 +52,10 @@ public final class ApiProvider {
     }
 
     protected void onInit() {
+        Gson gson = new Gson();
         FutureCallAdapterFactory<Pack> futureCall
                 = FutureCallAdapterFactory.create(Pack.class).addFilter(mFilter);
+        futureCall.setStreamDecoder(new GsonStreamDecoder(gson));
         OkHttpClient client = new OkHttpClient.Builder()
                 .addInterceptor(
                         new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BODY))
@@ -61,7 +63,7 @@ public final class ApiProvider {
         mRetrofit = new Retrofit.Builder()
                 .baseUrl("http://www.mocky.io/v2/")
                 .addConverterFactory(ScalarsConverterFactory.create())
-                .addConverterFactory(GsonConverterFactory.create(new Gson()))
+                .addConverterFactory(GsonConverterFactory.create(gson))
                 .addCallAdapterFactory(futureCall)
                 .client(client)
                 .build();
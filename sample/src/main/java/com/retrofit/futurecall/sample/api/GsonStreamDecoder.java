@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Jie Wang.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+
+package com.retrofit.futurecall.sample.api;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.retrofit.futurecall.DataStream;
+import com.retrofit.futurecall.DataStreamDecoder;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.NoSuchElementException;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Streams the "result" array of a {@link com.retrofit.futurecall.sample.proto.Pack}
+ * envelope by a gson JsonReader, one element per next().
+ */
+
+public final class GsonStreamDecoder implements DataStreamDecoder {
+
+    private final Gson mGson;
+
+    public GsonStreamDecoder(Gson gson) {
+        mGson = gson;
+    }
+
+    @NonNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> DataStream<T> decode(@NonNull ResponseBody body, @NonNull Type elementType)
+            throws IOException {
+        final JsonReader reader = mGson.newJsonReader(body.charStream());
+        final TypeAdapter<T> adapter =
+                (TypeAdapter<T>) mGson.getAdapter(TypeToken.get(elementType));
+        final PackStream<T> stream = new PackStream<>(body, reader, adapter);
+        try {
+            reader.beginObject();
+            stream.readFields();
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+        return stream;
+    }
+
+    private static final class PackStream<T> implements DataStream<T> {
+
+        private final ResponseBody mBody;
+
+        private final JsonReader mReader;
+
+        private final TypeAdapter<T> mAdapter;
+
+        private boolean isInArray;
+
+        private int mCode;
+
+        private String mMessage;
+
+        PackStream(ResponseBody body, JsonReader reader, TypeAdapter<T> adapter) {
+            mBody = body;
+            mReader = reader;
+            mAdapter = adapter;
+        }
+
+        /**
+         * Read envelope fields until the data array starts or the envelope ends.
+         */
+        void readFields() throws IOException {
+            while (mReader.hasNext()) {
+                final String name = mReader.nextName();
+                if ("result".equals(name) && mReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    mReader.beginArray();
+                    isInArray = true;
+                    return;
+                } else if ("resultCode".equals(name)) {
+                    mCode = mReader.nextInt();
+                } else if ("resultMessage".equals(name)
+                        && mReader.peek() == JsonToken.STRING) {
+                    mMessage = mReader.nextString();
+                } else {
+                    mReader.skipValue();
+                }
+            }
+            mReader.endObject();
+        }
+
+        @Override
+        public int code() {
+            return mCode;
+        }
+
+        @Override
+        public String message() {
+            return mMessage;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!isInArray) {
+                return false;
+            }
+            try {
+                if (mReader.hasNext()) {
+                    return true;
+                }
+                mReader.endArray();
+                isInArray = false;
+                // fields after the data.
+                readFields();
+                return false;
+            } catch (IOException e) {
+                throw new JsonIOException(e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return mAdapter.read(mReader);
+            } catch (IOException e) {
+                throw new JsonIOException(e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        @Override
+        public void close() {
+            mBody.close();
+        }
+    }
+}